@@ -49,10 +49,34 @@ public class CollisionResolver {
             return null;
         }
 
-        // Calculate masses
+        applyImpulse(a, b, normal, velAlongNormal);
+
+        // Now separate particles to prevent overlap
+        separateParticles(a, b, normal, pair.penetration());
+
+        return CollisionEvent.create(
+            a.getHandle(),
+            b.getHandle(),
+            pair.contactPoint(),
+            relativeVelocity,
+            impactSpeed
+        );
+    }
+
+    // Resolves a contact along a normal (from A to B) that did not come from the current positions,
+    // e.g. one judged against a rewound world. Returns the impulse given to A (B gets the opposite),
+    // or null if A is not moving towards B along the normal.
+    public Vector2D resolveAlong(Particle a, Particle b, Vector2D normal) {
+        double closingSpeed = a.getVelocity().subtract(b.getVelocity()).dot(normal);
+        if (closingSpeed <= 0) {
+            return null;
+        }
+        return applyImpulse(a, b, normal, closingSpeed);
+    }
+
+    private Vector2D applyImpulse(Particle a, Particle b, Vector2D normal, double velAlongNormal) {
         double massA = a.getMass();
         double massB = b.getMass();
-        double totalMass = massA + massB;
 
         // Elastic collision formula:
         // For perfectly elastic collision (restitution = 1):
@@ -66,25 +90,19 @@ public class CollisionResolver {
 
         // Apply impulse to both particles
         Vector2D impulse = normal.multiply(impulseMagnitude);
+        applyImpulse(a, b, impulse);
+        return impulse;
+    }
 
+    // Also used to repeat a recorded impulse exactly
+    public void applyImpulse(Particle a, Particle b, Vector2D impulse) {
         // A gets pushed back (opposite to normal)
-        Vector2D newVelA = a.getVelocity().add(impulse.divide(massA));
+        Vector2D newVelA = a.getVelocity().add(impulse.divide(a.getMass()));
         // B gets pushed forward (along normal)
-        Vector2D newVelB = b.getVelocity().subtract(impulse.divide(massB));
+        Vector2D newVelB = b.getVelocity().subtract(impulse.divide(b.getMass()));
 
         a.setVelocity(newVelA);
         b.setVelocity(newVelB);
-
-        // Now separate particles to prevent overlap
-        separateParticles(a, b, normal, pair.penetration());
-
-        return CollisionEvent.create(
-            a.getId(),
-            b.getId(),
-            pair.contactPoint(),
-            relativeVelocity,
-            impactSpeed
-        );
     }
 
     private void separateParticles(Particle a, Particle b, Vector2D normal, double penetration) {
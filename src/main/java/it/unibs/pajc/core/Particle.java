@@ -5,12 +5,24 @@ import it.unibs.pajc.core.motion.MotionType;
 import javafx.scene.paint.Color;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 public class Particle implements Serializable {
 
+    private static final int HAS_ACCELERATION = 1;
+    private static final int HAS_ELAPSED_TIME = 1 << 1;
+    private static final int HAS_MOTION_TYPE = 1 << 2;
+    private static final int HAS_CALCULATOR = 1 << 3;
+    private static final MotionType[] MOTION_TYPES = MotionType.values();
+    // Id length marking a random UUID id (the default), stored as 16 bytes instead of 36
+    private static final int UUID_ID = 0xFFFF;
+
     private final String id;
     private final int playerId;
+    // Compact numeric id: what the network protocol and collision events refer to
+    private int handle = -1;
 
     private final double mass;
     private final double radius;
@@ -23,6 +35,8 @@ public class Particle implements Serializable {
     private transient MotionType motionType;
     private transient MotionCalculator motionCalculator;
     private double elapsedTime;
+    // The id as snapshots write it, worked out on the first snapshot: ids never change
+    private transient byte[] encodedId;
 
     public Particle(double mass, double radius, Color color, Vector2D position, Vector2D velocity) {
         this(UUID.randomUUID().toString(), -1, mass, radius, color, position, velocity);
@@ -30,11 +44,16 @@ public class Particle implements Serializable {
 
     public Particle(String id, int playerId, double mass, double radius, Color color,
                     Vector2D position, Vector2D velocity) {
+        this(id, playerId, mass, radius, new SerializableColor(color), position, velocity);
+    }
+
+    private Particle(String id, int playerId, double mass, double radius, SerializableColor color,
+                     Vector2D position, Vector2D velocity) {
         this.id = id;
         this.playerId = playerId;
         this.mass = mass;
         this.radius = radius;
-        this.color = new SerializableColor(color);
+        this.color = color;
         this.position = position;
         this.velocity = velocity;
         this.acceleration = Vector2D.ZERO;
@@ -108,9 +127,123 @@ public class Particle implements Serializable {
         return position.distanceTo(other.position);
     }
 
+    // Checkpoint encoding used by PhysicsWorld.snapshot(), motion included. Zero acceleration and
+    // elapsed time, the common case, are left out. Colors go as floats, which is what JavaFX holds.
+    void writeTo(ByteBuffer buffer) {
+        if (encodedId == null) {
+            encodedId = encodeId(id);
+        }
+        buffer.put(encodedId);
+        buffer.putInt(playerId);
+        buffer.putInt(handle);
+        buffer.putDouble(mass);
+        buffer.putDouble(radius);
+        buffer.putFloat((float) color.red);
+        buffer.putFloat((float) color.green);
+        buffer.putFloat((float) color.blue);
+        buffer.putFloat((float) color.opacity);
+        position.write(buffer);
+        velocity.write(buffer);
+
+        int flags = 0;
+        if (!acceleration.isExactlyZero()) flags |= HAS_ACCELERATION;
+        if (Double.doubleToRawLongBits(elapsedTime) != 0) flags |= HAS_ELAPSED_TIME;
+        if (motionType != null) flags |= HAS_MOTION_TYPE;
+        if (motionCalculator != null) flags |= HAS_CALCULATOR;
+        buffer.put((byte) flags);
+
+        if ((flags & HAS_ACCELERATION) != 0) acceleration.write(buffer);
+        if ((flags & HAS_ELAPSED_TIME) != 0) buffer.putDouble(elapsedTime);
+        if ((flags & HAS_MOTION_TYPE) != 0) buffer.put((byte) motionType.ordinal());
+        if ((flags & HAS_CALCULATOR) != 0) {
+            buffer.put((byte) motionCalculator.getMotionType().ordinal());
+            motionCalculator.writeState(buffer);
+        }
+    }
+
+    static Particle readFrom(ByteBuffer buffer) {
+        int idStart = buffer.position();
+        int idLength = Short.toUnsignedInt(buffer.getShort());
+        String id;
+        if (idLength == UUID_ID) {
+            id = new UUID(buffer.getLong(), buffer.getLong()).toString();
+        } else {
+            byte[] idBytes = new byte[idLength];
+            buffer.get(idBytes);
+            id = new String(idBytes, StandardCharsets.UTF_8);
+        }
+        byte[] encodedId = new byte[buffer.position() - idStart];
+        buffer.get(idStart, encodedId);
+
+        int playerId = buffer.getInt();
+        int handle = buffer.getInt();
+        double mass = buffer.getDouble();
+        double radius = buffer.getDouble();
+        SerializableColor color = new SerializableColor(buffer.getFloat(), buffer.getFloat(),
+            buffer.getFloat(), buffer.getFloat());
+
+        Particle particle = new Particle(id, playerId, mass, radius, color, Vector2D.read(buffer), Vector2D.read(buffer));
+        particle.handle = handle;
+        particle.encodedId = encodedId;
+
+        int flags = buffer.get();
+        if ((flags & HAS_ACCELERATION) != 0) particle.acceleration = Vector2D.read(buffer);
+        if ((flags & HAS_ELAPSED_TIME) != 0) particle.elapsedTime = buffer.getDouble();
+        if ((flags & HAS_MOTION_TYPE) != 0) particle.motionType = motionTypeOf(buffer.get());
+        if ((flags & HAS_CALCULATOR) != 0) {
+            particle.motionCalculator = MotionCalculator.readState(motionTypeOf(buffer.get()), buffer);
+        }
+        return particle;
+    }
+
+    private static byte[] encodeId(String id) {
+        ByteBuffer uuid = ByteBuffer.allocate(2 + 16);
+        if (putUuidId(id, uuid)) {
+            return uuid.array();
+        }
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        if (idBytes.length >= UUID_ID) {
+            throw new IllegalStateException("Particle id too long: " + idBytes.length + " bytes");
+        }
+        return ByteBuffer.allocate(2 + idBytes.length).putShort((short) idBytes.length).put(idBytes).array();
+    }
+
+    // Writes the id as 16 bytes if it is in exactly the form UUID.toString() produces, so it comes
+    // back unchanged
+    private static boolean putUuidId(String id, ByteBuffer buffer) {
+        if (id.length() != 36) return false;
+        long msb = 0, lsb = 0;
+        int digits = 0;
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') return false;
+                continue;
+            }
+            int digit;
+            if (c >= '0' && c <= '9') digit = c - '0';
+            else if (c >= 'a' && c <= 'f') digit = c - 'a' + 10;
+            else return false;
+            if (digits++ < 16) msb = msb << 4 | digit;
+            else lsb = lsb << 4 | digit;
+        }
+        buffer.putShort((short) UUID_ID);
+        buffer.putLong(msb);
+        buffer.putLong(lsb);
+        return true;
+    }
+
+    private static MotionType motionTypeOf(byte ordinal) {
+        if (ordinal < 0 || ordinal >= MOTION_TYPES.length) {
+            throw new IllegalArgumentException("Unknown motion type " + ordinal);
+        }
+        return MOTION_TYPES[ordinal];
+    }
+
     // Getters
     public String getId() { return id; }
     public int getPlayerId() { return playerId; }
+    public int getHandle() { return handle; }
     public double getMass() { return mass; }
     public double getRadius() { return radius; }
     public Color getColor() { return color.toColor(); }
@@ -122,6 +255,7 @@ public class Particle implements Serializable {
     public double getElapsedTime() { return elapsedTime; }
 
     // Setters
+    public void setHandle(int handle) { this.handle = handle; }
     public void setPosition(Vector2D position) { this.position = position; }
     public void setVelocity(Vector2D velocity) { this.velocity = velocity; }
     public void setAcceleration(Vector2D acceleration) { this.acceleration = acceleration; }
@@ -130,10 +264,14 @@ public class Particle implements Serializable {
         private final double red, green, blue, opacity;
 
         public SerializableColor(Color color) {
-            this.red = color.getRed();
-            this.green = color.getGreen();
-            this.blue = color.getBlue();
-            this.opacity = color.getOpacity();
+            this(color.getRed(), color.getGreen(), color.getBlue(), color.getOpacity());
+        }
+
+        SerializableColor(double red, double green, double blue, double opacity) {
+            this.red = red;
+            this.green = green;
+            this.blue = blue;
+            this.opacity = opacity;
         }
 
         public Color toColor() {
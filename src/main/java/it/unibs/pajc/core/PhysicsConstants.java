@@ -16,7 +16,47 @@ public final class PhysicsConstants {
 
     public static final int SERVER_PORT = 5555;
     public static final int TICK_RATE = 60;
+    public static final int SNAPSHOT_RATE = 60;
+    // Pool that ticks every room; the transport and socket threads need cores too
+    public static final int ROOM_WORKER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    public static final int UDP_FALLBACK_TICKS = 120;
     public static final int MAX_PLAYERS = 4;
+    public static final long GATEWAY_HEALTH_INTERVAL_MS = 500;
+    public static final int GATEWAY_HEALTH_TIMEOUT_MS = 300;
+    // Missed health checks in a row before a backend stops receiving rooms
+    public static final int GATEWAY_UNHEALTHY_AFTER = 3;
+    public static final int GATEWAY_VIRTUAL_NODES = 128;
+    // How long a keyed room stays on its backend after the last join routed to it
+    public static final long GATEWAY_PIN_TTL_MS = 60_000;
+    public static final double AOI_VIEW_RADIUS = 450;
+    public static final double AOI_NEAR_RADIUS = 200;
+    // Roughly one datagram of entity updates per client per snapshot
+    public static final int SNAPSHOT_BYTE_BUDGET = 1000;
+    public static final double AOI_CELL_SIZE = 100;
+    public static final int SNAPSHOT_HISTORY_SIZE = 64;
+    public static final int INPUT_QUEUE_CAPACITY = 1024;
+    public static final int INPUT_REDUNDANCY = 8;
+    public static final long INPUT_KEEPALIVE_MS = 200;
+    public static final long INPUT_RESEND_MS = 33;
+    public static final long PING_INTERVAL_MS = 250;
+    public static final long INTERPOLATION_DELAY_MS = 50;
+    // How far back the server keeps world history to judge inputs against what the player saw
+    public static final int LAG_COMPENSATION_MS = 500;
+    public static final int REPLAY_SEGMENT_BYTES = 4 << 20;
+    public static final int REPLAY_KEYFRAME_INTERVAL_MS = 1000;
+    // Records waiting for the replay writer before new ones are dropped; seconds of play for many rooms
+    public static final int REPLAY_MAX_QUEUED_RECORDS = 32_768;
+    public static final long MAX_EXTRAPOLATION_MS = 250;
+
+    public static final double WORLD_WIDTH = 1000;
+    public static final double WORLD_HEIGHT = 700;
+    public static final double MAX_PLAYER_SPEED = 600;
+    public static final double PLAYER_INPUT_ACCELERATION = 15.0;
+    // Lower damping = velocities maintained longer = more noticeable speed differences
+    public static final double PLAYER_DAMPING = 0.98;
+
+    public static final int POSITION_QUANTIZATION_BITS = 16;
+    public static final int VELOCITY_QUANTIZATION_BITS = 13;
 
     public static final double PLAYER_MOVE_FORCE = 500.0;
     public static final double RESTITUTION = 1.0;
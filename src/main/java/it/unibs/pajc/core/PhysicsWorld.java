@@ -4,12 +4,29 @@ import it.unibs.pajc.collision.CollisionDetector;
 import it.unibs.pajc.collision.CollisionEvent;
 import it.unibs.pajc.collision.CollisionResolver;
 
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 public class PhysicsWorld {
 
+    private static final int SNAPSHOT_MAGIC = 0x504A5753; // "PJWS"
+    private static final short SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_SIZE = 4 + 2 + 8 + 8 + 1 + 1 + 8 + 16 + 8 + 4 + 8 + 4;
+    // First guess at the encoded size of a particle; buffers grow if a world needs more
+    private static final int SNAPSHOT_BYTES_PER_PARTICLE = 160;
+
     private final List<Particle> particles;
     private final CollisionDetector collisionDetector;
     private final CollisionResolver collisionResolver;
@@ -21,6 +38,15 @@ public class PhysicsWorld {
 
     private Vector2D gravity;
     private double damping;
+    private int nextHandle = 1;
+
+    // Lockstep: every update advances exactly fixedDeltaTime, particles are kept in handle order
+    private boolean deterministic;
+    private double fixedDeltaTime;
+    private long stepCount;
+
+    // Reused by file checkpoints, so checkpointing every second does not allocate a new buffer each time
+    private ByteBuffer checkpointBuffer;
 
     public PhysicsWorld(double width, double height) {
         this(width, height, true);
@@ -38,7 +64,33 @@ public class PhysicsWorld {
         this.damping = PhysicsConstants.DEFAULT_DAMPING;
     }
 
+    // Makes the world bit-reproducible: the same particles and inputs give the same states on any
+    // thread or machine. update() then only accepts fixedDeltaTime, so a caller on another clock fails
+    // instead of silently running at the wrong speed. Particles (and so collision pairs and wall
+    // contacts) are processed in handle order.
+    public void setDeterministic(double fixedDeltaTime) {
+        if (fixedDeltaTime <= 0) {
+            throw new IllegalArgumentException("Fixed time step must be positive");
+        }
+        this.deterministic = true;
+        this.fixedDeltaTime = fixedDeltaTime;
+
+        List<Particle> sorted = new ArrayList<>(particles);
+        sorted.sort(Comparator.comparingInt(Particle::getHandle));
+        particles.clear();
+        particles.addAll(sorted);
+    }
+
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
     public void update(double deltaTime) {
+        if (deterministic && deltaTime != fixedDeltaTime) {
+            throw new IllegalArgumentException("Deterministic world steps by " + fixedDeltaTime + " s, got "
+                + deltaTime);
+        }
+        stepCount++;
         recentCollisions.clear();
 
         for (Particle particle : particles) {
@@ -81,8 +133,23 @@ public class PhysicsWorld {
         }
     }
 
+    // Particles without a handle get the next free one; owners that assign their own keep them
     public void addParticle(Particle particle) {
-        particles.add(particle);
+        if (particle.getHandle() < 0) {
+            particle.setHandle(nextHandle++);
+        } else {
+            nextHandle = Math.max(nextHandle, particle.getHandle() + 1);
+        }
+
+        if (deterministic) {
+            int index = particles.size();
+            while (index > 0 && particles.get(index - 1).getHandle() > particle.getHandle()) {
+                index--;
+            }
+            particles.add(index, particle);
+        } else {
+            particles.add(particle);
+        }
     }
 
     public void removeParticle(String particleId) {
@@ -103,6 +170,11 @@ public class PhysicsWorld {
             .orElse(null);
     }
 
+    // Index-based access so per-tick readers need neither a copy nor an iterator
+    public Particle getParticleAt(int index) {
+        return particles.get(index);
+    }
+
     public List<Particle> getParticles() {
         return new ArrayList<>(particles);
     }
@@ -135,4 +207,175 @@ public class PhysicsWorld {
     public int getParticleCount() {
         return particles.size();
     }
+
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    // 64-bit digest of the exact bits of every particle's state, in list order. Two worlds that
+    // stepped identically hash the same; any divergence, down to the last bit, changes it.
+    public long stateHash() {
+        long hash = mix(0x9e3779b97f4a7c15L, stepCount);
+        for (Particle p : particles) {
+            hash = mix(hash, p.getHandle());
+            hash = mix(hash, Double.doubleToLongBits(p.getPosition().x()));
+            hash = mix(hash, Double.doubleToLongBits(p.getPosition().y()));
+            hash = mix(hash, Double.doubleToLongBits(p.getVelocity().x()));
+            hash = mix(hash, Double.doubleToLongBits(p.getVelocity().y()));
+            hash = mix(hash, Double.doubleToLongBits(p.getAcceleration().x()));
+            hash = mix(hash, Double.doubleToLongBits(p.getAcceleration().y()));
+            hash = mix(hash, Double.doubleToLongBits(p.getElapsedTime()));
+        }
+        return hash;
+    }
+
+    // Checkpointing. A snapshot holds the exact bits of everything update() depends on, motion
+    // calculators and their integration state included, so a restored world steps on exactly like the
+    // original would have. Call it from the thread that updates the world.
+
+    // Writes a snapshot at the buffer's position; a BufferOverflowException leaves a partial one
+    public void snapshot(ByteBuffer buffer) {
+        buffer.putInt(SNAPSHOT_MAGIC);
+        buffer.putShort(SNAPSHOT_VERSION);
+        buffer.putDouble(width);
+        buffer.putDouble(height);
+        buffer.put((byte) (bounceOffWalls ? 1 : 0));
+        buffer.put((byte) (deterministic ? 1 : 0));
+        buffer.putDouble(fixedDeltaTime);
+        gravity.write(buffer);
+        buffer.putDouble(damping);
+        buffer.putInt(nextHandle);
+        buffer.putLong(stepCount);
+
+        // A copy-on-write iteration sees one consistent list even if particles are added meanwhile
+        List<Particle> current = new ArrayList<>(particles);
+        buffer.putInt(current.size());
+        for (Particle particle : current) {
+            particle.writeTo(buffer);
+        }
+    }
+
+    // Returns a heap buffer holding just the snapshot, ready to read
+    public ByteBuffer snapshot() {
+        return encodeSnapshot(null, false);
+    }
+
+    // The file is replaced atomically: a crash mid-write leaves the previous checkpoint intact
+    public void snapshot(Path file) throws IOException {
+        checkpointBuffer = encodeSnapshot(checkpointBuffer, true);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (checkpointBuffer.hasRemaining()) {
+                channel.write(checkpointBuffer);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private ByteBuffer encodeSnapshot(ByteBuffer buffer, boolean direct) {
+        int capacity = SNAPSHOT_HEADER_SIZE + particles.size() * SNAPSHOT_BYTES_PER_PARTICLE;
+        while (true) {
+            if (buffer == null || buffer.capacity() < capacity) {
+                buffer = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+            }
+            buffer.clear();
+            try {
+                snapshot(buffer);
+                return buffer.flip();
+            } catch (BufferOverflowException e) {
+                capacity = buffer.capacity() * 2;
+            }
+        }
+    }
+
+    // Replaces this world's state with the snapshot at the buffer's position. The snapshot is decoded
+    // in full first, so a corrupt one leaves the world untouched.
+    public void restore(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new StreamCorruptedException("Not a world snapshot");
+            }
+            short version = buffer.getShort();
+            if (version != SNAPSHOT_VERSION) {
+                throw new StreamCorruptedException("Unsupported snapshot version " + version);
+            }
+            double snapshotWidth = buffer.getDouble();
+            double snapshotHeight = buffer.getDouble();
+            boolean snapshotBounce = buffer.get() != 0;
+            // A well-formed snapshot of a different world: not corrupt, but it cannot go into this one
+            if (snapshotWidth != width) {
+                throw new IOException("Snapshot width " + snapshotWidth + " does not match world width " + width);
+            }
+            if (snapshotHeight != height) {
+                throw new IOException("Snapshot height " + snapshotHeight + " does not match world height " + height);
+            }
+            if (snapshotBounce != bounceOffWalls) {
+                throw new IOException("Snapshot walls " + wallMode(snapshotBounce) + " do not match world walls "
+                    + wallMode(bounceOffWalls));
+            }
+
+            boolean snapshotDeterministic = buffer.get() != 0;
+            double snapshotFixedDeltaTime = buffer.getDouble();
+            Vector2D snapshotGravity = Vector2D.read(buffer);
+            double snapshotDamping = buffer.getDouble();
+            int snapshotNextHandle = buffer.getInt();
+            long snapshotStepCount = buffer.getLong();
+
+            int count = buffer.getInt();
+            if (count < 0) {
+                throw new StreamCorruptedException("Negative particle count " + count);
+            }
+            List<Particle> restored = new ArrayList<>(Math.min(count, buffer.remaining()));
+            try {
+                for (int i = 0; i < count; i++) {
+                    restored.add(Particle.readFrom(buffer));
+                }
+            } catch (IllegalArgumentException e) {
+                throw new StreamCorruptedException(e.getMessage());
+            }
+
+            deterministic = snapshotDeterministic;
+            fixedDeltaTime = snapshotFixedDeltaTime;
+            gravity = snapshotGravity;
+            damping = snapshotDamping;
+            nextHandle = snapshotNextHandle;
+            stepCount = snapshotStepCount;
+            recentCollisions.clear();
+            // One copy of the copy-on-write list, not one per particle
+            particles.clear();
+            particles.addAll(restored);
+        } catch (BufferUnderflowException e) {
+            throw new StreamCorruptedException("Truncated world snapshot");
+        }
+    }
+
+    private static String wallMode(boolean bounceOffWalls) {
+        return bounceOffWalls ? "bouncing" : "open";
+    }
+
+    public void restore(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            restore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // A new world with the snapshot's size and state
+    public static PhysicsWorld fromSnapshot(ByteBuffer buffer) throws IOException {
+        ByteBuffer header = buffer.duplicate();
+        if (header.remaining() < SNAPSHOT_HEADER_SIZE || header.getInt() != SNAPSHOT_MAGIC) {
+            throw new StreamCorruptedException("Not a world snapshot");
+        }
+        header.getShort();
+        PhysicsWorld world = new PhysicsWorld(header.getDouble(), header.getDouble(), header.get() != 0);
+        world.restore(buffer);
+        return world;
+    }
+
+    public static long mix(long hash, long value) {
+        hash ^= value;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
 }
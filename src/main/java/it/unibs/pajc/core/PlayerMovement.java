@@ -0,0 +1,22 @@
+package it.unibs.pajc.core;
+
+// Movement rules shared by the authoritative server and client-side prediction
+public final class PlayerMovement {
+
+    private PlayerMovement() {}
+
+    public static void applyInput(Particle particle, Vector2D direction) {
+        if (direction.magnitudeSquared() == 0) return;
+
+        // Apply velocity boost - accelerate in the direction pressed
+        Vector2D velocityBoost = direction.normalize().multiply(PhysicsConstants.PLAYER_INPUT_ACCELERATION);
+        Vector2D newVel = particle.getVelocity().add(velocityBoost);
+
+        // Cap max speed - allows building up significant momentum
+        double maxSpeed = PhysicsConstants.MAX_PLAYER_SPEED;
+        if (newVel.magnitude() > maxSpeed) {
+            newVel = newVel.normalize().multiply(maxSpeed);
+        }
+        particle.setVelocity(newVel);
+    }
+}
@@ -1,6 +1,7 @@
 package it.unibs.pajc.core;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 public record Vector2D(double x, double y) implements Serializable {
 
@@ -14,8 +15,8 @@ public record Vector2D(double x, double y) implements Serializable {
 
     public static Vector2D fromPolar(double magnitude, double angleRadians) {
         return new Vector2D(
-            magnitude * Math.cos(angleRadians),
-            magnitude * Math.sin(angleRadians)
+            magnitude * StrictMath.cos(angleRadians),
+            magnitude * StrictMath.sin(angleRadians)
         );
     }
 
@@ -63,8 +64,8 @@ public record Vector2D(double x, double y) implements Serializable {
     }
 
     public Vector2D rotate(double angleRadians) {
-        double cos = Math.cos(angleRadians);
-        double sin = Math.sin(angleRadians);
+        double cos = StrictMath.cos(angleRadians);
+        double sin = StrictMath.sin(angleRadians);
         return new Vector2D(
             x * cos - y * sin,
             x * sin + y * cos
@@ -72,11 +73,11 @@ public record Vector2D(double x, double y) implements Serializable {
     }
 
     public double angle() {
-        return Math.atan2(y, x);
+        return StrictMath.atan2(y, x);
     }
 
     public double angleTo(Vector2D other) {
-        return Math.atan2(other.y - y, other.x - x);
+        return StrictMath.atan2(other.y - y, other.x - x);
     }
 
     public Vector2D perpendicular() {
@@ -103,6 +104,20 @@ public record Vector2D(double x, double y) implements Serializable {
         );
     }
 
+    public void write(ByteBuffer buffer) {
+        buffer.putDouble(x);
+        buffer.putDouble(y);
+    }
+
+    public static Vector2D read(ByteBuffer buffer) {
+        return new Vector2D(buffer.getDouble(), buffer.getDouble());
+    }
+
+    // True only for +0.0 in both components, so -0.0 survives a round trip
+    public boolean isExactlyZero() {
+        return Double.doubleToRawLongBits(x) == 0 && Double.doubleToRawLongBits(y) == 0;
+    }
+
     @Override
     public String toString() {
         return String.format("(%.2f, %.2f)", x, y);
@@ -4,6 +4,7 @@ import it.unibs.pajc.core.Particle;
 import it.unibs.pajc.core.ParticleState;
 import it.unibs.pajc.core.Vector2D;
 
+import java.nio.ByteBuffer;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -29,14 +30,14 @@ public class CircularMotion implements MotionCalculator {
     public ParticleState calculate(Particle particle, double deltaTime, double elapsedTime) {
         double angle = angularVelocity * elapsedTime + initialPhase;
 
-        double x = center.x() + radius * Math.cos(angle);
-        double y = center.y() + radius * Math.sin(angle);
+        double x = center.x() + radius * StrictMath.cos(angle);
+        double y = center.y() + radius * StrictMath.sin(angle);
 
-        double vx = -radius * angularVelocity * Math.sin(angle);
-        double vy = radius * angularVelocity * Math.cos(angle);
+        double vx = -radius * angularVelocity * StrictMath.sin(angle);
+        double vy = radius * angularVelocity * StrictMath.cos(angle);
 
-        double ax = -radius * angularVelocity * angularVelocity * Math.cos(angle);
-        double ay = -radius * angularVelocity * angularVelocity * Math.sin(angle);
+        double ax = -radius * angularVelocity * angularVelocity * StrictMath.cos(angle);
+        double ay = -radius * angularVelocity * angularVelocity * StrictMath.sin(angle);
 
         return new ParticleState(
             new Vector2D(x, y),
@@ -67,6 +68,18 @@ public class CircularMotion implements MotionCalculator {
         // No state to reset
     }
 
+    @Override
+    public void writeState(ByteBuffer buffer) {
+        center.write(buffer);
+        buffer.putDouble(radius);
+        buffer.putDouble(angularVelocity);
+        buffer.putDouble(initialPhase);
+    }
+
+    public static CircularMotion read(ByteBuffer buffer) {
+        return new CircularMotion(Vector2D.read(buffer), buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+
     @Override
     public MotionType getMotionType() {
         return MotionType.CIRCULAR;
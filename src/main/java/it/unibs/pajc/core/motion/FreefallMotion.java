@@ -5,6 +5,7 @@ import it.unibs.pajc.core.ParticleState;
 import it.unibs.pajc.core.PhysicsConstants;
 import it.unibs.pajc.core.Vector2D;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 public class FreefallMotion implements MotionCalculator {
@@ -46,6 +47,16 @@ public class FreefallMotion implements MotionCalculator {
         // No state to reset
     }
 
+    @Override
+    public void writeState(ByteBuffer buffer) {
+        initialPosition.write(buffer);
+        buffer.putDouble(gravity);
+    }
+
+    public static FreefallMotion read(ByteBuffer buffer) {
+        return new FreefallMotion(Vector2D.read(buffer), buffer.getDouble());
+    }
+
     @Override
     public MotionType getMotionType() {
         return MotionType.FREEFALL;
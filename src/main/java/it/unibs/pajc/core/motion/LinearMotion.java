@@ -4,6 +4,7 @@ import it.unibs.pajc.core.Particle;
 import it.unibs.pajc.core.ParticleState;
 import it.unibs.pajc.core.Vector2D;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 public class LinearMotion implements MotionCalculator {
@@ -37,6 +38,16 @@ public class LinearMotion implements MotionCalculator {
         // No state to reset for linear motion
     }
 
+    @Override
+    public void writeState(ByteBuffer buffer) {
+        initialPosition.write(buffer);
+        velocity.write(buffer);
+    }
+
+    public static LinearMotion read(ByteBuffer buffer) {
+        return new LinearMotion(Vector2D.read(buffer), Vector2D.read(buffer));
+    }
+
     @Override
     public MotionType getMotionType() {
         return MotionType.LINEAR;
@@ -3,6 +3,7 @@ package it.unibs.pajc.core.motion;
 import it.unibs.pajc.core.Particle;
 import it.unibs.pajc.core.ParticleState;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 public interface MotionCalculator {
@@ -14,4 +15,20 @@ public interface MotionCalculator {
     void reset();
 
     MotionType getMotionType();
+
+    // Writes the parameters and any integration state, exactly: readState() of the same type
+    // rebuilds a calculator that continues identically
+    void writeState(ByteBuffer buffer);
+
+    static MotionCalculator readState(MotionType type, ByteBuffer buffer) {
+        return switch (type) {
+            case PROJECTILE -> ProjectileMotion.read(buffer);
+            case CIRCULAR -> CircularMotion.read(buffer);
+            case SIMPLE_HARMONIC -> SimpleHarmonicMotion.read(buffer);
+            case PENDULUM -> PendulumMotion.read(buffer);
+            case LINEAR -> LinearMotion.read(buffer);
+            case FREEFALL -> FreefallMotion.read(buffer);
+            case PLAYER_CONTROLLED -> throw new IllegalArgumentException("No calculator for " + type);
+        };
+    }
 }
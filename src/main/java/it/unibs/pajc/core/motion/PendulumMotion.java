@@ -5,6 +5,7 @@ import it.unibs.pajc.core.ParticleState;
 import it.unibs.pajc.core.PhysicsConstants;
 import it.unibs.pajc.core.Vector2D;
 
+import java.nio.ByteBuffer;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -24,11 +25,16 @@ public class PendulumMotion implements MotionCalculator {
     }
 
     public PendulumMotion(Vector2D pivotPoint, double length, double maxAngleDegrees, double gravity) {
+        this(Math.toRadians(maxAngleDegrees), pivotPoint, length, gravity);
+    }
+
+    // Takes the angle in radians, as held, so restoring does not go through a degrees round trip
+    private PendulumMotion(double maxAngleRadians, Vector2D pivotPoint, double length, double gravity) {
         this.pivotPoint = pivotPoint;
         this.length = length;
-        this.maxAngle = Math.toRadians(maxAngleDegrees);
+        this.maxAngle = maxAngleRadians;
         this.gravity = gravity;
-        reset();
+        this.currentAngle = maxAngleRadians;
     }
 
     @Override
@@ -43,24 +49,24 @@ public class PendulumMotion implements MotionCalculator {
 
         if (Math.abs(maxAngle) < Math.toRadians(15)) {
             double w = Math.sqrt(gravity / length);
-            theta = maxAngle * Math.cos(w * elapsedTime);
-            omega = -maxAngle * w * Math.sin(w * elapsedTime);
-            alpha = -maxAngle * w * w * Math.cos(w * elapsedTime);
+            theta = maxAngle * StrictMath.cos(w * elapsedTime);
+            omega = -maxAngle * w * StrictMath.sin(w * elapsedTime);
+            alpha = -maxAngle * w * w * StrictMath.cos(w * elapsedTime);
         } else {
             integrateRK4(deltaTime);
             theta = currentAngle;
             omega = currentAngularVelocity;
-            alpha = -(gravity / length) * Math.sin(theta);
+            alpha = -(gravity / length) * StrictMath.sin(theta);
         }
 
-        double x = pivotPoint.x() + length * Math.sin(theta);
-        double y = pivotPoint.y() + length * Math.cos(theta);
+        double x = pivotPoint.x() + length * StrictMath.sin(theta);
+        double y = pivotPoint.y() + length * StrictMath.cos(theta);
 
-        double vx = length * omega * Math.cos(theta);
-        double vy = -length * omega * Math.sin(theta);
+        double vx = length * omega * StrictMath.cos(theta);
+        double vy = -length * omega * StrictMath.sin(theta);
 
-        double ax = length * alpha * Math.cos(theta) - length * omega * omega * Math.sin(theta);
-        double ay = -length * alpha * Math.sin(theta) - length * omega * omega * Math.cos(theta);
+        double ax = length * alpha * StrictMath.cos(theta) - length * omega * omega * StrictMath.sin(theta);
+        double ay = -length * alpha * StrictMath.sin(theta) - length * omega * omega * StrictMath.cos(theta);
 
         return new ParticleState(
             new Vector2D(x, y),
@@ -73,16 +79,16 @@ public class PendulumMotion implements MotionCalculator {
         double g_over_L = gravity / length;
 
         double k1_theta = currentAngularVelocity;
-        double k1_omega = -g_over_L * Math.sin(currentAngle);
+        double k1_omega = -g_over_L * StrictMath.sin(currentAngle);
 
         double k2_theta = currentAngularVelocity + 0.5 * dt * k1_omega;
-        double k2_omega = -g_over_L * Math.sin(currentAngle + 0.5 * dt * k1_theta);
+        double k2_omega = -g_over_L * StrictMath.sin(currentAngle + 0.5 * dt * k1_theta);
 
         double k3_theta = currentAngularVelocity + 0.5 * dt * k2_omega;
-        double k3_omega = -g_over_L * Math.sin(currentAngle + 0.5 * dt * k2_theta);
+        double k3_omega = -g_over_L * StrictMath.sin(currentAngle + 0.5 * dt * k2_theta);
 
         double k4_theta = currentAngularVelocity + dt * k3_omega;
-        double k4_omega = -g_over_L * Math.sin(currentAngle + dt * k3_theta);
+        double k4_omega = -g_over_L * StrictMath.sin(currentAngle + dt * k3_theta);
 
         currentAngle += (dt / 6) * (k1_theta + 2*k2_theta + 2*k3_theta + k4_theta);
         currentAngularVelocity += (dt / 6) * (k1_omega + 2*k2_omega + 2*k3_omega + k4_omega);
@@ -109,6 +115,28 @@ public class PendulumMotion implements MotionCalculator {
         initialized = false;
     }
 
+    @Override
+    public void writeState(ByteBuffer buffer) {
+        pivotPoint.write(buffer);
+        buffer.putDouble(length);
+        buffer.putDouble(maxAngle);
+        buffer.putDouble(gravity);
+        buffer.putDouble(currentAngle);
+        buffer.putDouble(currentAngularVelocity);
+        buffer.put((byte) (initialized ? 1 : 0));
+    }
+
+    public static PendulumMotion read(ByteBuffer buffer) {
+        Vector2D pivotPoint = Vector2D.read(buffer);
+        double length = buffer.getDouble();
+        double maxAngle = buffer.getDouble();
+        PendulumMotion motion = new PendulumMotion(maxAngle, pivotPoint, length, buffer.getDouble());
+        motion.currentAngle = buffer.getDouble();
+        motion.currentAngularVelocity = buffer.getDouble();
+        motion.initialized = buffer.get() != 0;
+        return motion;
+    }
+
     @Override
     public MotionType getMotionType() {
         return MotionType.PENDULUM;
@@ -5,6 +5,7 @@ import it.unibs.pajc.core.ParticleState;
 import it.unibs.pajc.core.PhysicsConstants;
 import it.unibs.pajc.core.Vector2D;
 
+import java.nio.ByteBuffer;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -89,6 +90,17 @@ public class ProjectileMotion implements MotionCalculator {
         // No state to reset
     }
 
+    @Override
+    public void writeState(ByteBuffer buffer) {
+        initialPosition.write(buffer);
+        initialVelocity.write(buffer);
+        buffer.putDouble(gravity);
+    }
+
+    public static ProjectileMotion read(ByteBuffer buffer) {
+        return new ProjectileMotion(Vector2D.read(buffer), Vector2D.read(buffer), buffer.getDouble());
+    }
+
     @Override
     public MotionType getMotionType() {
         return MotionType.PROJECTILE;
@@ -4,6 +4,7 @@ import it.unibs.pajc.core.Particle;
 import it.unibs.pajc.core.ParticleState;
 import it.unibs.pajc.core.Vector2D;
 
+import java.nio.ByteBuffer;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -21,8 +22,14 @@ public class SimpleHarmonicMotion implements MotionCalculator {
 
     public SimpleHarmonicMotion(Vector2D equilibriumPosition, Vector2D direction,
                                 double amplitude, double angularFrequency, double initialPhase) {
+        this(equilibriumPosition, amplitude, angularFrequency, initialPhase, direction.normalize());
+    }
+
+    // Takes the direction as is: normalizing an already normalized vector can change its last bit
+    private SimpleHarmonicMotion(Vector2D equilibriumPosition, double amplitude, double angularFrequency,
+                                 double initialPhase, Vector2D unitDirection) {
         this.equilibriumPosition = equilibriumPosition;
-        this.direction = direction.normalize();
+        this.direction = unitDirection;
         this.amplitude = amplitude;
         this.angularFrequency = angularFrequency;
         this.initialPhase = initialPhase;
@@ -32,9 +39,9 @@ public class SimpleHarmonicMotion implements MotionCalculator {
     public ParticleState calculate(Particle particle, double deltaTime, double elapsedTime) {
         double phase = angularFrequency * elapsedTime + initialPhase;
 
-        double displacement = amplitude * Math.cos(phase);
-        double velocity = -amplitude * angularFrequency * Math.sin(phase);
-        double acceleration = -amplitude * angularFrequency * angularFrequency * Math.cos(phase);
+        double displacement = amplitude * StrictMath.cos(phase);
+        double velocity = -amplitude * angularFrequency * StrictMath.sin(phase);
+        double acceleration = -amplitude * angularFrequency * angularFrequency * StrictMath.cos(phase);
 
         Vector2D pos = equilibriumPosition.add(direction.multiply(displacement));
         Vector2D vel = direction.multiply(velocity);
@@ -65,6 +72,22 @@ public class SimpleHarmonicMotion implements MotionCalculator {
         // No state to reset
     }
 
+    @Override
+    public void writeState(ByteBuffer buffer) {
+        equilibriumPosition.write(buffer);
+        direction.write(buffer);
+        buffer.putDouble(amplitude);
+        buffer.putDouble(angularFrequency);
+        buffer.putDouble(initialPhase);
+    }
+
+    public static SimpleHarmonicMotion read(ByteBuffer buffer) {
+        Vector2D equilibriumPosition = Vector2D.read(buffer);
+        Vector2D unitDirection = Vector2D.read(buffer);
+        return new SimpleHarmonicMotion(equilibriumPosition, buffer.getDouble(), buffer.getDouble(),
+            buffer.getDouble(), unitDirection);
+    }
+
     @Override
     public MotionType getMotionType() {
         return MotionType.SIMPLE_HARMONIC;
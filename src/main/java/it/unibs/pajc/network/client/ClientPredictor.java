@@ -0,0 +1,102 @@
+package it.unibs.pajc.network.client;
+
+import it.unibs.pajc.core.*;
+import it.unibs.pajc.network.protocol.EntityInfo;
+import it.unibs.pajc.network.protocol.SnapshotCodec;
+import it.unibs.pajc.network.protocol.StateUpdateMessage;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// Runs the local player's particle ahead of the server and reconciles it with each snapshot
+public class ClientPredictor {
+
+    private static final int MAX_PENDING_INPUTS = 256;
+
+    private final PhysicsWorld world;
+    private final Particle particle;
+    private final Deque<PendingInput> pendingInputs;
+    private final double tickTime;
+    private double accumulator;
+    private Vector2D currentDirection = Vector2D.ZERO;
+
+    public ClientPredictor(EntityInfo info, StateUpdateMessage.PlayerState initialState, int simulationHz) {
+        this.world = new PhysicsWorld(PhysicsConstants.WORLD_WIDTH, PhysicsConstants.WORLD_HEIGHT, true);
+        this.world.setDamping(PhysicsConstants.PLAYER_DAMPING);
+        this.particle = info.createParticle(initialState);
+        this.world.addParticle(particle);
+        this.pendingInputs = new ArrayDeque<>();
+        this.tickTime = 1.0 / simulationHz;
+    }
+
+    // Like the server, the direction is held and applied on every following tick
+    public void applyLocalInput(long inputSequence, Vector2D direction) {
+        currentDirection = direction;
+
+        pendingInputs.addLast(new PendingInput(inputSequence, direction));
+        if (pendingInputs.size() > MAX_PENDING_INPUTS) {
+            pendingInputs.removeFirst();
+        }
+    }
+
+    public void advance(double deltaTime) {
+        accumulator += deltaTime;
+        while (accumulator >= tickTime) {
+            step(currentDirection);
+            PendingInput latest = pendingInputs.peekLast();
+            if (latest != null) {
+                latest.ticksAfter++;
+            }
+            accumulator -= tickTime;
+        }
+    }
+
+    // Rewind to the authoritative state, then replay what the server has not simulated yet:
+    // the rest of the last processed input's ticks, followed by every newer input
+    public void reconcile(StateUpdateMessage.PlayerState authoritative) {
+        while (!pendingInputs.isEmpty() && pendingInputs.peekFirst().sequence < authoritative.lastProcessedInput) {
+            pendingInputs.removeFirst();
+        }
+
+        particle.setPosition(authoritative.getPosition());
+        particle.setVelocity(authoritative.getVelocity());
+
+        boolean anchored = false;
+        for (PendingInput input : pendingInputs) {
+            int ticks = input.ticksAfter;
+            if (!anchored && input.sequence == authoritative.lastProcessedInput) {
+                ticks -= authoritative.ticksSinceInput;
+            }
+            anchored = true;
+            for (int i = 0; i < ticks; i++) {
+                step(input.direction);
+            }
+        }
+    }
+
+    private void step(Vector2D direction) {
+        PlayerMovement.applyInput(particle, direction);
+        world.update(tickTime);
+        particle.setPosition(SnapshotCodec.quantizePosition(particle.getPosition()));
+        particle.setVelocity(SnapshotCodec.quantizeVelocity(particle.getVelocity()));
+    }
+
+    public Particle getParticle() {
+        return particle;
+    }
+
+    public int getPendingInputCount() {
+        return pendingInputs.size();
+    }
+
+    private static class PendingInput {
+        private final long sequence;
+        private final Vector2D direction;
+        private int ticksAfter;
+
+        private PendingInput(long sequence, Vector2D direction) {
+            this.sequence = sequence;
+            this.direction = direction;
+        }
+    }
+}
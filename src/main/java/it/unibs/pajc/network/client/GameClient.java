@@ -1,19 +1,31 @@
 package it.unibs.pajc.network.client;
 
+import it.unibs.pajc.core.PhysicsConstants;
 import it.unibs.pajc.core.Vector2D;
 import it.unibs.pajc.network.protocol.*;
 
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 public class GameClient {
 
+    private static final int MAX_WRITE_BATCH = 64;
+    private static final int MAX_REDIRECTS = 1;
+
     private Socket socket;
-    private ObjectInputStream in;
-    private ObjectOutputStream out;
+    private DataInputStream in;
+    private DataOutputStream out;
 
     private int playerId;
     private String playerName;
@@ -21,40 +33,94 @@ public class GameClient {
 
     private volatile boolean connected;
     private Thread listenerThread;
+    private Thread writerThread;
+    private Thread pingThread;
+    private final LatencyEstimator latency;
+
+    // Inputs the server has not confirmed yet, resent with every outbound input packet (writer thread only)
+    private final Deque<InputMessage> unackedInputs;
+    private volatile long ackedInputSequence;
+    private volatile long interpolationDelayNanos = PhysicsConstants.INTERPOLATION_DELAY_MS * 1_000_000L;
+
+    // Static attributes of every entity the server has announced, keyed by handle
+    private final Map<Integer, EntityInfo> entities;
+    private volatile int ownEntityId = -1;
+    // Replaced by the room's own tick length at game start
+    private volatile long tickNanos = 1_000_000_000L / PhysicsConstants.TICK_RATE;
 
     private Consumer<StateUpdateMessage> stateUpdateHandler;
     private Consumer<GameStartMessage> gameStartHandler;
     private Consumer<PlayerLeftMessage> playerLeftHandler;
+    private Consumer<EntitySpawnMessage> entitySpawnHandler;
+    private Consumer<EntityDespawnMessage> entityDespawnHandler;
     private Consumer<String> statusHandler;
     private Runnable disconnectHandler;
 
-    private final BlockingQueue<Message> outgoingMessages;
+    private final BlockingQueue<OutgoingMessage> outgoingMessages;
+    private final SnapshotHistory receivedSnapshots;
+    private long lastAppliedTick;
+
+    private UdpClientChannel udpChannel;
+    private NetworkConditioner networkConditioner;
+    private volatile boolean lastStateViaUdp;
+
+    // Key press to wire latency of inputs, only written by the writer thread
+    private volatile long inputLatencySamples;
+    private volatile long inputLatencyTotalNanos;
+    private volatile long inputLatencyMaxNanos;
 
     public GameClient() {
         this.connected = false;
         this.inputSequence = 0;
         this.outgoingMessages = new LinkedBlockingQueue<>();
+        this.unackedInputs = new ArrayDeque<>();
+        this.latency = new LatencyEstimator();
+        this.receivedSnapshots = new SnapshotHistory(PhysicsConstants.SNAPSHOT_HISTORY_SIZE);
+        this.entities = new ConcurrentHashMap<>();
+        this.lastAppliedTick = StateDeltaMessage.KEYFRAME;
+        this.networkConditioner = NetworkConditioner.NONE;
     }
 
     public boolean connect(String host, int port, String playerName, javafx.scene.paint.Color color) {
+        return connect(host, port, playerName, color, null);
+    }
+
+    // host:port may be a gateway, which answers the join with the backend that hosts the room
+    public boolean connect(String host, int port, String playerName, javafx.scene.paint.Color color,
+                           String roomKey) {
         try {
             this.playerName = playerName;
-            socket = new Socket(host, port);
+            JoinMessage joinMsg = new JoinMessage(playerName, color, roomKey);
+            Message response = null;
 
-            out = new ObjectOutputStream(socket.getOutputStream());
-            out.flush();
-            in = new ObjectInputStream(socket.getInputStream());
+            for (int hop = 0; hop <= MAX_REDIRECTS; hop++) {
+                socket = new Socket(host, port);
+                socket.setTcpNoDelay(true);
 
-            JoinMessage joinMsg = new JoinMessage(playerName, color);
-            out.writeObject(joinMsg);
-            out.flush();
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
 
-            Message response = (Message) in.readObject();
+                MessageCodec.writeFrame(out, joinMsg);
+                out.flush();
+
+                response = MessageCodec.readFrame(in);
+                if (!(response instanceof RedirectMessage redirect)) {
+                    break;
+                }
+
+                socket.close();
+                host = redirect.getHost();
+                port = redirect.getPort();
+                log("Redirected to " + host + ":" + port);
+            }
 
             if (response instanceof JoinResponseMessage joinResponse) {
                 if (joinResponse.isAccepted()) {
                     this.playerId = joinResponse.getAssignedPlayerId();
                     connected = true;
+                    openUdpChannel(host, port, joinResponse.getUdpToken());
+                    startWriter();
+                    startPinging();
                     log("Connected as Player " + playerId);
                     return true;
                 } else {
@@ -64,25 +130,53 @@ public class GameClient {
                 }
             }
 
+            socket.close();
             return false;
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             log("Connection failed: " + e.getMessage());
             return false;
         }
     }
 
+    private void openUdpChannel(String host, int port, long token) {
+        udpChannel = new UdpClientChannel(new InetSocketAddress(host, port), playerId, token,
+            message -> {
+                lastStateViaUdp = true;
+                handleMessage(message);
+            },
+            networkConditioner);
+        try {
+            udpChannel.start();
+        } catch (IOException e) {
+            log("UDP unavailable, using TCP only: " + e.getMessage());
+            udpChannel = null;
+        }
+    }
+
+    // Applies to the UDP channel opened by the next connect(); useful over loopback in tests
+    public void setNetworkConditioner(NetworkConditioner conditioner) {
+        this.networkConditioner = conditioner != null ? conditioner : NetworkConditioner.NONE;
+    }
+
     public void startListening() {
         if (!connected) return;
 
         listenerThread = new Thread(() -> {
             try {
                 while (connected && !socket.isClosed()) {
-                    Message message = (Message) in.readObject();
+                    Message message = MessageCodec.readFrame(in);
+                    if (message.getType() == MessageType.STATE_DELTA) {
+                        lastStateViaUdp = false;
+                        UdpClientChannel udp = udpChannel;
+                        if (udp != null) {
+                            udp.onStateOverTcp();
+                        }
+                    }
                     handleMessage(message);
                 }
             } catch (EOFException e) {
                 log("Server closed connection");
-            } catch (IOException | ClassNotFoundException e) {
+            } catch (IOException e) {
                 if (connected) {
                     log("Error reading from server: " + e.getMessage());
                 }
@@ -98,13 +192,29 @@ public class GameClient {
     private void handleMessage(Message message) {
         switch (message.getType()) {
             case STATE_UPDATE -> {
+                noteAckedInput(((StateUpdateMessage) message).getPlayerStates());
                 if (stateUpdateHandler != null) {
                     stateUpdateHandler.accept((StateUpdateMessage) message);
                 }
             }
+            case STATE_DELTA -> handleStateDelta((StateDeltaMessage) message);
             case GAME_START -> {
+                GameStartMessage start = (GameStartMessage) message;
+                tickNanos = 1_000_000_000L / start.getSimulationHz();
+                start.getEntities().forEach(this::rememberEntity);
                 if (gameStartHandler != null) {
-                    gameStartHandler.accept((GameStartMessage) message);
+                    gameStartHandler.accept(start);
+                }
+            }
+            case ENTITY_SPAWN -> {
+                rememberEntity(((EntitySpawnMessage) message).getInfo());
+                if (entitySpawnHandler != null) {
+                    entitySpawnHandler.accept((EntitySpawnMessage) message);
+                }
+            }
+            case ENTITY_DESPAWN -> {
+                if (entityDespawnHandler != null) {
+                    entityDespawnHandler.accept((EntityDespawnMessage) message);
                 }
             }
             case PLAYER_LEFT -> {
@@ -115,32 +225,291 @@ public class GameClient {
             case COLLISION_EVENT -> {
                 // Handled via StateUpdateMessage
             }
-            case PONG -> {
-                // Latency measurement response
-            }
+            case PONG -> latency.onPong((PongMessage) message, System.nanoTime());
             default -> log("Unknown message type: " + message.getType());
         }
     }
 
-    public void sendInput(Vector2D direction) {
-        if (!connected) return;
+    // Snapshots can arrive on both the TCP listener and the UDP receiver
+    private synchronized void handleStateDelta(StateDeltaMessage delta) {
+        if (delta.getServerTick() <= lastAppliedTick) {
+            return;
+        }
+
+        WorldSnapshot baseline = null;
+        if (!delta.isKeyframe()) {
+            baseline = receivedSnapshots.get(delta.getBaselineTick());
+            if (baseline == null) {
+                // Baseline already evicted: wait for the server to fall back to a keyframe
+                return;
+            }
+        }
+
+        WorldSnapshot snapshot;
+        try {
+            snapshot = SnapshotCodec.decode(baseline, delta.getServerTick(), delta.getPayload());
+        } catch (IOException e) {
+            log("Error decoding state delta: " + e.getMessage());
+            return;
+        }
+
+        receivedSnapshots.add(snapshot);
+        lastAppliedTick = snapshot.getTick();
+        StateUpdateMessage.PlayerState own = snapshot.get(ownEntityId);
+        if (own != null && own.lastProcessedInput > ackedInputSequence) {
+            ackedInputSequence = own.lastProcessedInput;
+        }
+        enqueue(new StateAckMessage(playerId, snapshot.getTick()), false);
+
+        if (stateUpdateHandler != null) {
+            stateUpdateHandler.accept(new StateUpdateMessage(
+                snapshot.getTick(),
+                snapshot.toList(),
+                delta.getRecentCollisions()
+            ));
+        }
+    }
+
+    private void rememberEntity(EntityInfo info) {
+        entities.put(info.entityId, info);
+        if (info.playerId == playerId) {
+            ownEntityId = info.entityId;
+        }
+    }
+
+    private void noteAckedInput(List<StateUpdateMessage.PlayerState> states) {
+        for (StateUpdateMessage.PlayerState state : states) {
+            if (state.entityId == ownEntityId && state.lastProcessedInput > ackedInputSequence) {
+                ackedInputSequence = state.lastProcessedInput;
+            }
+        }
+    }
+
+    // Returns the sequence number assigned to the input, or -1 when not connected
+    public long sendInput(Vector2D direction) {
+        return sendInput(direction, System.nanoTime());
+    }
+
+    // pressedAtNanos is when the key event behind this input happened, used for latency stats
+    public long sendInput(Vector2D direction, long pressedAtNanos) {
+        if (!connected) return -1;
 
         inputSequence++;
-        InputMessage input = new InputMessage(playerId, direction, inputSequence);
+        enqueue(new InputMessage(playerId, direction, inputSequence), false, pressedAtNanos);
+        return inputSequence;
+    }
+
+    private void enqueue(Message message, boolean reliable) {
+        enqueue(message, reliable, System.nanoTime());
+    }
+
+    private void enqueue(Message message, boolean reliable, long createdNanos) {
+        if (!connected) return;
+        outgoingMessages.offer(new OutgoingMessage(message, reliable, createdNanos));
+    }
+
+    // Callers (the FX thread included) only enqueue; all socket writes happen here
+    private void startWriter() {
+        writerThread = new Thread(() -> {
+            List<OutgoingMessage> batch = new ArrayList<>();
+            try {
+                while (connected) {
+                    // While inputs are unconfirmed, wake up periodically to repeat them
+                    OutgoingMessage next = unackedInputs.isEmpty()
+                        ? outgoingMessages.take()
+                        : outgoingMessages.poll(inputResendNanos(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        resendUnackedInputs();
+                        continue;
+                    }
+                    batch.add(next);
+                    outgoingMessages.drainTo(batch, MAX_WRITE_BATCH - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "Client-Writer");
+
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    private void startPinging() {
+        pingThread = new Thread(() -> {
+            try {
+                while (connected) {
+                    enqueue(new PingMessage(playerId, System.nanoTime(), latency.getSmoothedRttNanos(),
+                        interpolationDelayNanos), true);
+                    Thread.sleep(PhysicsConstants.PING_INTERVAL_MS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "Client-Ping");
+
+        pingThread.setDaemon(true);
+        pingThread.start();
+    }
+
+    // An ack cannot come back sooner than a round trip, so only repeat inputs once it is overdue
+    private long inputResendNanos() {
+        long fallback = PhysicsConstants.INPUT_RESEND_MS * 1_000_000L;
+        if (!latency.hasSamples()) return fallback;
+
+        long overdue = latency.getSmoothedRttNanos() + 2 * latency.getJitterNanos();
+        return Math.max(tickNanos, Math.min(overdue, fallback * 4));
+    }
+
+    private void writeBatch(List<OutgoingMessage> batch) {
+        List<Message> reliable = new ArrayList<>();
+        List<InputMessage> inputs = new ArrayList<>();
+        List<OutgoingMessage> inputEntries = new ArrayList<>();
+        StateAckMessage latestAck = null;
+
+        for (OutgoingMessage entry : batch) {
+            if (entry.reliable()) {
+                reliable.add(entry.message());
+            } else if (entry.message() instanceof InputMessage input) {
+                inputs.add(input);
+                inputEntries.add(entry);
+            } else if (entry.message() instanceof StateAckMessage ack) {
+                // Only the newest ack matters to the server
+                if (latestAck == null || ack.getAckedTick() > latestAck.getAckedTick()) {
+                    latestAck = ack;
+                }
+            }
+        }
+
+        List<Message> unreliable = new ArrayList<>(2);
+        if (!inputs.isEmpty()) {
+            unreliable.add(bundleInputs(inputs));
+        }
+        if (latestAck != null) {
+            unreliable.add(latestAck);
+        }
+
+        boolean viaUdp = sendViaUdp(unreliable);
+        if (!viaUdp) {
+            reliable.addAll(unreliable);
+        }
+        boolean written = writeFrames(reliable);
+
+        // Inputs count towards the latency only once they have actually left
+        if (!viaUdp && !written) return;
+
+        long wireTime = System.nanoTime();
+        for (OutgoingMessage entry : inputEntries) {
+            recordInputLatency(wireTime - entry.createdNanos());
+        }
+    }
+
+    // Each packet repeats up to INPUT_REDUNDANCY unacknowledged inputs, so a lost packet is covered
+    // by the next one; the server drops the sequences it has already applied
+    private Message bundleInputs(List<InputMessage> inputs) {
+        unackedInputs.addAll(inputs);
+        pruneAckedInputs();
+        while (unackedInputs.size() > PhysicsConstants.INPUT_REDUNDANCY) {
+            unackedInputs.removeFirst();
+        }
+
+        if (unackedInputs.size() == 1) {
+            return unackedInputs.peekFirst();
+        }
+        return new InputBatchMessage(playerId, new ArrayList<>(unackedInputs));
+    }
+
+    private void pruneAckedInputs() {
+        long acked = ackedInputSequence;
+        while (!unackedInputs.isEmpty() && unackedInputs.peekFirst().getInputSequence() <= acked) {
+            unackedInputs.removeFirst();
+        }
+    }
+
+    // Only matters over UDP; inputs written to TCP cannot be lost
+    private void resendUnackedInputs() {
+        pruneAckedInputs();
+        if (unackedInputs.isEmpty()) return;
+
+        Message bundle = unackedInputs.size() == 1
+            ? unackedInputs.peekFirst()
+            : new InputBatchMessage(playerId, new ArrayList<>(unackedInputs));
+        if (!sendViaUdp(List.of(bundle))) {
+            unackedInputs.clear();
+        }
+    }
+
+    // Follows the snapshots: while they arrive over UDP, inputs and acks go back the same way
+    private boolean sendViaUdp(List<Message> messages) {
+        UdpClientChannel udp = udpChannel;
+        if (messages.isEmpty() || udp == null || !udp.isConfirmed() || !lastStateViaUdp) {
+            return messages.isEmpty();
+        }
+
+        try {
+            for (Message message : messages) {
+                udp.send(message);
+            }
+            return true;
+        } catch (IOException e) {
+            lastStateViaUdp = false;
+            return false;
+        }
+    }
+
+    // Every pending frame goes out with a single flush
+    private boolean writeFrames(List<Message> messages) {
+        if (messages.isEmpty()) return true;
+        if (!connected) return false;
 
         try {
-            out.writeObject(input);
+            for (Message message : messages) {
+                MessageCodec.writeFrame(out, message);
+            }
             out.flush();
-            out.reset();
+            return true;
         } catch (IOException e) {
-            log("Error sending input: " + e.getMessage());
+            if (connected) {
+                log("Error sending " + messages.size() + " message(s): " + e.getMessage());
+            }
+            return false;
         }
     }
 
+    private void recordInputLatency(long nanos) {
+        inputLatencySamples++;
+        inputLatencyTotalNanos += nanos;
+        if (nanos > inputLatencyMaxNanos) {
+            inputLatencyMaxNanos = nanos;
+        }
+    }
+
+    public double getAverageInputLatencyMillis() {
+        long samples = inputLatencySamples;
+        return samples == 0 ? 0 : inputLatencyTotalNanos / (samples * 1_000_000.0);
+    }
+
+    public double getMaxInputLatencyMillis() {
+        return inputLatencyMaxNanos / 1_000_000.0;
+    }
+
     public void disconnect() {
         if (!connected) return;
         connected = false;
 
+        if (writerThread != null) {
+            writerThread.interrupt();
+        }
+        if (pingThread != null) {
+            pingThread.interrupt();
+        }
+        outgoingMessages.clear();
+
+        if (udpChannel != null) {
+            udpChannel.close();
+        }
+
         try {
             if (in != null) in.close();
             if (out != null) out.close();
@@ -168,6 +537,14 @@ public class GameClient {
         this.playerLeftHandler = handler;
     }
 
+    public void setEntitySpawnHandler(Consumer<EntitySpawnMessage> handler) {
+        this.entitySpawnHandler = handler;
+    }
+
+    public void setEntityDespawnHandler(Consumer<EntityDespawnMessage> handler) {
+        this.entityDespawnHandler = handler;
+    }
+
     public void setStatusHandler(Consumer<String> handler) {
         this.statusHandler = handler;
     }
@@ -183,10 +560,27 @@ public class GameClient {
         }
     }
 
+    public LatencyEstimator getLatency() {
+        return latency;
+    }
+
+    // Reported to the server with every ping so it can rewind to what this client was shown
+    public void setInterpolationDelay(long nanos) {
+        this.interpolationDelayNanos = nanos;
+    }
+
     public int getPlayerId() {
         return playerId;
     }
 
+    public EntityInfo getEntityInfo(int entityId) {
+        return entities.get(entityId);
+    }
+
+    public int getOwnEntityId() {
+        return ownEntityId;
+    }
+
     public boolean isConnected() {
         return connected;
     }
@@ -194,4 +588,6 @@ public class GameClient {
     public String getPlayerName() {
         return playerName;
     }
+
+    private record OutgoingMessage(Message message, boolean reliable, long createdNanos) {}
 }
@@ -0,0 +1,94 @@
+package it.unibs.pajc.network.client;
+
+import it.unibs.pajc.network.protocol.PongMessage;
+
+// Smoothed RTT and jitter (RFC 6298 style) plus server clock and tick offsets from ping/pong
+public class LatencyEstimator {
+
+    private static final int OFFSET_WINDOW = 16;
+
+    private long samples;
+    private double srttNanos;
+    private double rttVarNanos;
+    private long minRttNanos = Long.MAX_VALUE;
+
+    // Taken from the lowest-RTT pong in the current window, where queueing skews it least
+    private final long[] windowRtt = new long[OFFSET_WINDOW];
+    private final long[] windowOffset = new long[OFFSET_WINDOW];
+    private double clockOffsetNanos;
+
+    private long lastPongTick = -1;
+    private long lastPongLocalNanos;
+    private long tickNanos;
+
+    public synchronized void onPong(PongMessage pong, long receivedNanos) {
+        long rtt = receivedNanos - pong.getEchoedClientNanos();
+        if (rtt < 0) return;
+
+        if (samples == 0) {
+            srttNanos = rtt;
+            rttVarNanos = rtt / 2.0;
+        } else {
+            rttVarNanos += (Math.abs(srttNanos - rtt) - rttVarNanos) / 4.0;
+            srttNanos += (rtt - srttNanos) / 8.0;
+        }
+        minRttNanos = Math.min(minRttNanos, rtt);
+
+        // Assume the pong was stamped halfway through the round trip
+        long offset = pong.getServerNanos() - (pong.getEchoedClientNanos() + rtt / 2);
+        int slot = (int) (samples % OFFSET_WINDOW);
+        windowRtt[slot] = rtt;
+        windowOffset[slot] = offset;
+        samples++;
+
+        int best = 0;
+        int filled = (int) Math.min(samples, OFFSET_WINDOW);
+        for (int i = 1; i < filled; i++) {
+            if (windowRtt[i] < windowRtt[best]) best = i;
+        }
+        clockOffsetNanos = windowOffset[best];
+
+        tickNanos = pong.getTickNanos();
+        lastPongTick = pong.getServerTick();
+        lastPongLocalNanos = receivedNanos - rtt / 2;
+    }
+
+    public synchronized boolean hasSamples() {
+        return samples > 0;
+    }
+
+    public synchronized double getSmoothedRttMillis() {
+        return srttNanos / 1_000_000.0;
+    }
+
+    public synchronized long getSmoothedRttNanos() {
+        return (long) srttNanos;
+    }
+
+    public synchronized double getJitterMillis() {
+        return rttVarNanos / 1_000_000.0;
+    }
+
+    public synchronized long getJitterNanos() {
+        return (long) rttVarNanos;
+    }
+
+    public synchronized double getMinRttMillis() {
+        return samples == 0 ? 0 : minRttNanos / 1_000_000.0;
+    }
+
+    // server nanoTime ~= local nanoTime + offset
+    public synchronized long getClockOffsetNanos() {
+        return (long) clockOffsetNanos;
+    }
+
+    // Fractional server tick being simulated right now, or -1 before the first pong
+    public synchronized double estimateServerTick(long localNanos) {
+        if (lastPongTick < 0 || tickNanos <= 0) return -1;
+        return lastPongTick + (double) (localNanos - lastPongLocalNanos) / tickNanos;
+    }
+
+    public synchronized long getSampleCount() {
+        return samples;
+    }
+}
@@ -0,0 +1,189 @@
+package it.unibs.pajc.network.client;
+
+import it.unibs.pajc.core.PhysicsConstants;
+import it.unibs.pajc.core.Vector2D;
+import it.unibs.pajc.network.protocol.StateUpdateMessage;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Renders remote particles slightly in the past so there is always a pair of samples to blend between.
+// Snapshots only carry the entities refreshed that tick, so every entity keeps its own sample history.
+public class SnapshotInterpolator {
+
+    private static final int MAX_BUFFERED_SAMPLES = 32;
+    private static final double JITTER_MULTIPLIER = 3.0;
+    private static final double DELAY_ADAPT_RATE = 0.05;
+    private static final long MAX_DELAY_NANOS = 500_000_000L;
+
+    private final Map<Integer, Deque<TimedState>> histories;
+    private double tickNanos;
+    private double defaultSnapshotIntervalNanos;
+
+    private long minimumDelayNanos;
+    private long maxExtrapolationNanos;
+    private double delayNanos;
+
+    // Smoothed estimate of (local receive time - server tick time), plus its mean deviation
+    private boolean clockInitialized;
+    private double arrivalOffsetNanos;
+    private double jitterNanos;
+    private double snapshotIntervalNanos;
+    private double roundTripJitterNanos;
+    private long newestTick = -1;
+
+    private long extrapolatedFrames;
+
+    public SnapshotInterpolator() {
+        this(PhysicsConstants.INTERPOLATION_DELAY_MS * 1_000_000L);
+    }
+
+    public SnapshotInterpolator(long minimumDelayNanos) {
+        this.histories = new HashMap<>();
+        this.minimumDelayNanos = minimumDelayNanos;
+        this.maxExtrapolationNanos = PhysicsConstants.MAX_EXTRAPOLATION_MS * 1_000_000L;
+        this.delayNanos = minimumDelayNanos;
+        // Until the server announces its own rates at game start
+        this.tickNanos = 1_000_000_000.0 / PhysicsConstants.TICK_RATE;
+        this.defaultSnapshotIntervalNanos = 1_000_000_000.0 / PhysicsConstants.SNAPSHOT_RATE;
+        this.snapshotIntervalNanos = defaultSnapshotIntervalNanos;
+    }
+
+    // Rates announced by the server at game start; ticks in snapshots are counted at simulationHz
+    public synchronized void setTickRates(int simulationHz, int snapshotHz) {
+        this.tickNanos = 1_000_000_000.0 / simulationHz;
+        this.defaultSnapshotIntervalNanos = 1_000_000_000.0 / snapshotHz;
+        this.snapshotIntervalNanos = defaultSnapshotIntervalNanos;
+    }
+
+    public synchronized void addSnapshot(long serverTick, List<StateUpdateMessage.PlayerState> states,
+                                         long receivedNanos) {
+        if (serverTick <= newestTick) return;
+
+        double offset = receivedNanos - serverTick * tickNanos;
+        if (!clockInitialized) {
+            arrivalOffsetNanos = offset;
+            clockInitialized = true;
+        } else {
+            double deviation = offset - arrivalOffsetNanos;
+            jitterNanos += (Math.abs(deviation) - jitterNanos) / 16.0;
+            // Follow a faster path immediately, drift slowly towards a slower one
+            arrivalOffsetNanos += deviation < 0 ? deviation : deviation / 16.0;
+            snapshotIntervalNanos += ((serverTick - newestTick) * tickNanos - snapshotIntervalNanos) / 8.0;
+        }
+        newestTick = serverTick;
+
+        for (StateUpdateMessage.PlayerState state : states) {
+            Deque<TimedState> history = histories.computeIfAbsent(state.entityId, id -> new ArrayDeque<>());
+            history.addLast(new TimedState(serverTick, state));
+            if (history.size() > MAX_BUFFERED_SAMPLES) {
+                history.removeFirst();
+            }
+        }
+
+        // One snapshot interval to always have a pair to blend, plus headroom for jitter
+        // Ping jitter covers both directions, roughly half of it applies to snapshots
+        double jitter = Math.max(jitterNanos, roundTripJitterNanos / 2);
+        double target = Math.max(minimumDelayNanos, snapshotIntervalNanos + JITTER_MULTIPLIER * jitter);
+        target = Math.min(target, MAX_DELAY_NANOS);
+        delayNanos += (target - delayNanos) * DELAY_ADAPT_RATE;
+    }
+
+    public synchronized Map<Integer, Sample> sample(long nowNanos) {
+        Map<Integer, Sample> result = new HashMap<>();
+        if (histories.isEmpty()) return result;
+
+        double renderTick = (nowNanos - arrivalOffsetNanos - delayNanos) / tickNanos;
+        boolean extrapolated = false;
+
+        for (Map.Entry<Integer, Deque<TimedState>> entry : histories.entrySet()) {
+            Deque<TimedState> history = entry.getValue();
+
+            // Drop samples that can no longer bracket the render time, keeping one behind it
+            while (history.size() > 1 && secondOf(history).tick <= renderTick) {
+                history.removeFirst();
+            }
+            TimedState older = history.peekFirst();
+            StateUpdateMessage.PlayerState from = older.state;
+
+            if (renderTick <= older.tick) {
+                result.put(entry.getKey(), new Sample(from.getPosition(), from.getVelocity()));
+                continue;
+            }
+
+            if (history.size() == 1) {
+                // No newer sample yet: carry on along the last known velocity for a short while
+                double ahead = Math.min((renderTick - older.tick) * tickNanos, maxExtrapolationNanos) / 1e9;
+                extrapolated = true;
+                result.put(entry.getKey(), new Sample(
+                    from.getPosition().add(from.getVelocity().multiply(ahead)), from.getVelocity()));
+                continue;
+            }
+
+            TimedState newer = secondOf(history);
+            StateUpdateMessage.PlayerState to = newer.state;
+            double t = (renderTick - older.tick) / (newer.tick - older.tick);
+            result.put(entry.getKey(), new Sample(
+                from.getPosition().lerp(to.getPosition(), t),
+                from.getVelocity().lerp(to.getVelocity(), t)));
+        }
+
+        if (extrapolated) {
+            extrapolatedFrames++;
+        }
+        return result;
+    }
+
+    private static TimedState secondOf(Deque<TimedState> deque) {
+        Iterator<TimedState> it = deque.iterator();
+        it.next();
+        return it.next();
+    }
+
+    // The entity left the client's view; its samples must not linger or come back on re-entry
+    public synchronized void forget(int entityId) {
+        histories.remove(entityId);
+    }
+
+    public synchronized void clear() {
+        histories.clear();
+        clockInitialized = false;
+        newestTick = -1;
+        jitterNanos = 0;
+        snapshotIntervalNanos = defaultSnapshotIntervalNanos;
+        delayNanos = minimumDelayNanos;
+    }
+
+    public synchronized void setMinimumDelay(long nanos) {
+        this.minimumDelayNanos = nanos;
+    }
+
+    // Jitter measured by ping/pong, used as a floor for the jitter seen in snapshot arrivals
+    public synchronized void setRoundTripJitter(long nanos) {
+        this.roundTripJitterNanos = nanos;
+    }
+
+    public synchronized void setMaxExtrapolation(long nanos) {
+        this.maxExtrapolationNanos = nanos;
+    }
+
+    public synchronized double getDelayMillis() {
+        return delayNanos / 1_000_000.0;
+    }
+
+    public synchronized double getJitterMillis() {
+        return jitterNanos / 1_000_000.0;
+    }
+
+    public synchronized long getExtrapolatedFrames() {
+        return extrapolatedFrames;
+    }
+
+    public record Sample(Vector2D position, Vector2D velocity) {}
+
+    private record TimedState(long tick, StateUpdateMessage.PlayerState state) {}
+}
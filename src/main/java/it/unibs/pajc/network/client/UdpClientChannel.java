@@ -0,0 +1,148 @@
+package it.unibs.pajc.network.client;
+
+import it.unibs.pajc.network.protocol.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+public class UdpClientChannel {
+
+    private static final int HELLO_ATTEMPTS = 10;
+    private static final long HELLO_INTERVAL_MS = 200;
+    private static final long RETRY_MIN_NANOS = 1_000_000_000L;
+    private static final long RETRY_MAX_NANOS = 30_000_000_000L;
+
+    private final InetSocketAddress serverAddress;
+    private final int playerId;
+    private final long token;
+    private final Consumer<Message> messageHandler;
+    private final NetworkConditioner conditioner;
+    private final FragmentAssembler assembler;
+
+    private DatagramChannel channel;
+    private volatile boolean running;
+    private volatile boolean confirmed;
+    private final AtomicBoolean handshaking;
+    private volatile long retryDelayNanos;
+    private volatile long retryAtNanos;
+
+    public UdpClientChannel(InetSocketAddress serverAddress, int playerId, long token,
+                            Consumer<Message> messageHandler, NetworkConditioner conditioner) {
+        this.serverAddress = serverAddress;
+        this.playerId = playerId;
+        this.token = token;
+        this.messageHandler = messageHandler;
+        this.conditioner = conditioner;
+        this.assembler = new FragmentAssembler();
+        this.handshaking = new AtomicBoolean(false);
+        this.retryDelayNanos = RETRY_MIN_NANOS;
+    }
+
+    public void start() throws IOException {
+        channel = DatagramChannel.open();
+        channel.connect(serverAddress);
+        running = true;
+
+        Thread receiver = new Thread(this::receiveLoop, "Client-UDP");
+        receiver.setDaemon(true);
+        receiver.start();
+
+        handshaking.set(true);
+        startHandshake();
+    }
+
+    private void startHandshake() {
+        Thread handshake = new Thread(this::handshake, "Client-UDP-Hello");
+        handshake.setDaemon(true);
+        handshake.start();
+    }
+
+    // If no HELLO_ACK ever arrives the server keeps sending everything over TCP
+    private void handshake() {
+        try {
+            for (int i = 0; i < HELLO_ATTEMPTS && running && !confirmed; i++) {
+                sendPacket(DatagramCodec.HELLO, new byte[0]);
+                Thread.sleep(HELLO_INTERVAL_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ignored) {
+            // Port unreachable or similar: stay on TCP
+        } finally {
+            handshaking.set(false);
+        }
+    }
+
+    // Called for every snapshot that arrives over TCP: the handshake failed or the server fell back.
+    // The handshake is tried again after a delay that doubles with every retry, up to RETRY_MAX_NANOS.
+    public void onStateOverTcp() {
+        if (!running || handshaking.get()) return;
+
+        long now = System.nanoTime();
+        if (retryAtNanos == 0) {
+            retryAtNanos = now + retryDelayNanos;
+            return;
+        }
+        if (now - retryAtNanos < 0 || !handshaking.compareAndSet(false, true)) return;
+
+        retryAtNanos = 0;
+        retryDelayNanos = Math.min(retryDelayNanos * 2, RETRY_MAX_NANOS);
+        confirmed = false;
+        startHandshake();
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+        while (running) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
+                if (!buffer.hasRemaining()) continue;
+
+                byte type = buffer.get();
+                if (type == DatagramCodec.HELLO_ACK) {
+                    sendPacket(DatagramCodec.HELLO_CONFIRM, new byte[0]);
+                    confirmed = true;
+                } else if (type == DatagramCodec.STATE_FRAGMENT
+                        && buffer.remaining() >= DatagramCodec.FRAGMENT_HEADER_SIZE - 1) {
+                    byte[] frame = assembler.accept(buffer);
+                    if (frame != null) {
+                        messageHandler.accept(DatagramCodec.decodeMessage(frame, 0, frame.length));
+                    }
+                }
+            } catch (AsynchronousCloseException e) {
+                break;
+            } catch (IOException e) {
+                // ICMP port unreachable and malformed datagrams are simply dropped
+            }
+        }
+    }
+
+    public void send(Message message) throws IOException {
+        sendPacket(DatagramCodec.MESSAGE, DatagramCodec.encodeMessage(message));
+    }
+
+    private void sendPacket(byte type, byte[] payload) throws IOException {
+        conditioner.send(channel, DatagramCodec.clientPacket(type, playerId, token, payload), serverAddress);
+    }
+
+    public boolean isConfirmed() {
+        return confirmed;
+    }
+
+    public void close() {
+        running = false;
+        conditioner.shutdown();
+
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,99 @@
+package it.unibs.pajc.network.gateway;
+
+import it.unibs.pajc.network.protocol.HealthStatusMessage;
+
+// A GameServer process behind the gateway, as last seen by the health checker
+public class BackendNode {
+
+    private final String id;
+    private final String host;
+    private final int port;
+
+    private volatile boolean healthy;
+    private volatile boolean drainRequested;
+    private volatile int consecutiveFailures;
+    private volatile HealthStatusMessage lastStatus;
+    private volatile long lastSeenNanos;
+
+    public BackendNode(String host, int port) {
+        this.id = host + ":" + port;
+        this.host = host;
+        this.port = port;
+    }
+
+    // Returns true if the node's routability changed
+    boolean recordSuccess(HealthStatusMessage status) {
+        boolean wasRoutable = isRoutable();
+        lastStatus = status;
+        lastSeenNanos = System.nanoTime();
+        consecutiveFailures = 0;
+        healthy = true;
+        return wasRoutable != isRoutable();
+    }
+
+    // A node is only taken out after several misses in a row, so one slow probe does not move rooms
+    boolean recordFailure(int unhealthyAfter) {
+        boolean wasRoutable = isRoutable();
+        consecutiveFailures++;
+        if (consecutiveFailures >= unhealthyAfter) {
+            healthy = false;
+        }
+        return wasRoutable != isRoutable();
+    }
+
+    void setDrainRequested(boolean drainRequested) {
+        this.drainRequested = drainRequested;
+    }
+
+    // Draining nodes keep their open rooms but receive no new ones
+    public boolean isRoutable() {
+        return healthy && !isDraining();
+    }
+
+    public boolean isDraining() {
+        HealthStatusMessage status = lastStatus;
+        return drainRequested || (status != null && status.isDraining());
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    // A drained node can be restarted once it has no players left
+    public boolean isDrained() {
+        HealthStatusMessage status = lastStatus;
+        return isDraining() && status != null && status.getPlayerCount() == 0;
+    }
+
+    public int getPlayerCount() {
+        HealthStatusMessage status = lastStatus;
+        return status != null ? status.getPlayerCount() : 0;
+    }
+
+    public int getRoomCount() {
+        HealthStatusMessage status = lastStatus;
+        return status != null ? status.getRoomCount() : 0;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public long getLastSeenNanos() {
+        return lastSeenNanos;
+    }
+
+    @Override
+    public String toString() {
+        String state = !healthy ? "down" : isDraining() ? (isDrained() ? "drained" : "draining") : "up";
+        return id + " [" + state + ", " + getPlayerCount() + " players]";
+    }
+}
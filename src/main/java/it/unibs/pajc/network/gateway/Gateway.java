@@ -0,0 +1,197 @@
+package it.unibs.pajc.network.gateway;
+
+import it.unibs.pajc.core.PhysicsConstants;
+import it.unibs.pajc.network.protocol.*;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Front door for a set of GameServer processes. A client's join is answered with a redirect to the
+// backend hosting its room; the client then talks to that backend directly (TCP and UDP), so the
+// gateway never carries game traffic.
+public final class Gateway {
+
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+
+    private final RoomDirectory directory;
+    private final HealthChecker healthChecker;
+    private final ExecutorService executor;
+    private final AtomicLong redirected;
+    private final AtomicLong rejected;
+
+    private ServerSocket serverSocket;
+    private Thread acceptThread;
+    private volatile boolean running;
+    private Consumer<String> statusCallback;
+
+    public Gateway() {
+        this.directory = new RoomDirectory(PhysicsConstants.GATEWAY_VIRTUAL_NODES, PhysicsConstants.GATEWAY_PIN_TTL_MS);
+        this.healthChecker = new HealthChecker(directory, PhysicsConstants.GATEWAY_HEALTH_INTERVAL_MS,
+            PhysicsConstants.GATEWAY_HEALTH_TIMEOUT_MS, PhysicsConstants.GATEWAY_UNHEALTHY_AFTER, this::log);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.redirected = new AtomicLong();
+        this.rejected = new AtomicLong();
+    }
+
+    // Backends start out unroutable until their first health check succeeds
+    public BackendNode addBackend(String host, int port) {
+        BackendNode node = new BackendNode(host, port);
+        directory.addBackend(node);
+        log("Added backend " + node.getId());
+        return node;
+    }
+
+    public void removeBackend(String id) {
+        directory.removeBackend(id);
+        log("Removed backend " + id);
+    }
+
+    // Rolling restart: drain, wait for isDrained(), restart the process, then undrain
+    public void drain(String id) {
+        setDrainRequested(id, true);
+    }
+
+    public void undrain(String id) {
+        setDrainRequested(id, false);
+    }
+
+    private void setDrainRequested(String id, boolean drain) {
+        BackendNode node = directory.getBackend(id);
+        if (node == null) {
+            throw new IllegalArgumentException("Unknown backend " + id);
+        }
+        node.setDrainRequested(drain);
+        directory.rebuild();
+        log((drain ? "Draining " : "Undraining ") + node);
+    }
+
+    public boolean isDrained(String id) {
+        BackendNode node = directory.getBackend(id);
+        return node != null && node.isDrained();
+    }
+
+    public void start(int port) throws IOException {
+        serverSocket = new ServerSocket(port);
+        running = true;
+        healthChecker.start();
+
+        acceptThread = new Thread(this::acceptLoop, "Gateway-Acceptor");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+
+        log("Gateway started on port " + port);
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                executor.submit(() -> handleConnection(socket));
+            } catch (SocketException e) {
+                if (running) {
+                    log("Socket exception: " + e.getMessage());
+                }
+            } catch (IOException e) {
+                log("Error accepting client: " + e.getMessage());
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            Message message = MessageCodec.readFrame(in);
+            if (message.getType() != MessageType.JOIN_REQUEST) {
+                return;
+            }
+
+            JoinMessage joinMsg = (JoinMessage) message;
+            BackendNode backend = directory.route(joinMsg.getRoomKey());
+            Message response;
+            if (backend != null) {
+                redirected.incrementAndGet();
+                response = new RedirectMessage(backend.getHost(), backend.getPort());
+            } else {
+                rejected.incrementAndGet();
+                response = JoinResponseMessage.reject("No game server available");
+            }
+
+            MessageCodec.writeFrame(out, response);
+            out.flush();
+        } catch (IOException e) {
+            log("Error handling connection: " + e.getMessage());
+        }
+    }
+
+    public void stop() {
+        running = false;
+        healthChecker.stop();
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            log("Error closing gateway socket: " + e.getMessage());
+        }
+        executor.shutdown();
+        log("Gateway stopped");
+    }
+
+    public void setStatusCallback(Consumer<String> callback) {
+        this.statusCallback = callback;
+    }
+
+    void log(String message) {
+        System.out.println("[Gateway] " + message);
+        if (statusCallback != null) {
+            statusCallback.accept(message);
+        }
+    }
+
+    public RoomDirectory getDirectory() {
+        return directory;
+    }
+
+    public HealthChecker getHealthChecker() {
+        return healthChecker;
+    }
+
+    public long getRedirectedJoins() {
+        return redirected.get();
+    }
+
+    public long getRejectedJoins() {
+        return rejected.get();
+    }
+
+    public List<BackendNode> getBackends() {
+        return directory.getBackends();
+    }
+
+    // Usage: Gateway <port> <host:port> [<host:port> ...]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: Gateway <port> <backend host:port> [...]");
+            System.exit(1);
+        }
+
+        Gateway gateway = new Gateway();
+        for (int i = 1; i < args.length; i++) {
+            int colon = args[i].lastIndexOf(':');
+            gateway.addBackend(args[i].substring(0, colon), Integer.parseInt(args[i].substring(colon + 1)));
+        }
+        gateway.start(Integer.parseInt(args[0]));
+        Runtime.getRuntime().addShutdownHook(new Thread(gateway::stop));
+    }
+}
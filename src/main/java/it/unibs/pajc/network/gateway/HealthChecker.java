@@ -0,0 +1,92 @@
+package it.unibs.pajc.network.gateway;
+
+import it.unibs.pajc.network.protocol.HealthCheckMessage;
+import it.unibs.pajc.network.protocol.HealthStatusMessage;
+import it.unibs.pajc.network.protocol.Message;
+import it.unibs.pajc.network.protocol.MessageCodec;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Probes every backend on a fixed interval over the same TCP port clients use
+public class HealthChecker {
+
+    private final RoomDirectory directory;
+    private final long intervalMillis;
+    private final int timeoutMillis;
+    private final int unhealthyAfter;
+    private final Consumer<String> logger;
+
+    private ScheduledExecutorService scheduler;
+
+    public HealthChecker(RoomDirectory directory, long intervalMillis, int timeoutMillis, int unhealthyAfter,
+                         Consumer<String> logger) {
+        this.directory = directory;
+        this.intervalMillis = intervalMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.unhealthyAfter = unhealthyAfter;
+        this.logger = logger;
+    }
+
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Gateway-Health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkAll, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    // Also usable directly, e.g. to refresh the directory right after adding a backend
+    public void checkAll() {
+        boolean changed = false;
+        for (BackendNode node : directory.getBackends()) {
+            changed |= check(node);
+        }
+        if (changed) {
+            directory.rebuild();
+        }
+    }
+
+    private boolean check(BackendNode node) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(node.getHost(), node.getPort()), timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            MessageCodec.writeFrame(out, new HealthCheckMessage());
+            out.flush();
+
+            Message reply = MessageCodec.readFrame(in);
+            if (!(reply instanceof HealthStatusMessage status)) {
+                throw new IOException("unexpected reply " + reply.getType());
+            }
+
+            boolean changed = node.recordSuccess(status);
+            directory.updatePins(node, System.nanoTime());
+            if (changed) {
+                logger.accept("Backend " + node);
+            }
+            return changed;
+        } catch (IOException e) {
+            boolean changed = node.recordFailure(unhealthyAfter);
+            if (changed) {
+                logger.accept("Backend " + node + ": " + e.getMessage());
+            }
+            return changed;
+        }
+    }
+}
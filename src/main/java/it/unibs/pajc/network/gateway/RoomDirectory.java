@@ -0,0 +1,125 @@
+package it.unibs.pajc.network.gateway;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Decides which backend hosts a room. New keyed rooms go where the consistent-hash ring points, so
+// adding or removing a backend only moves the keys on its arcs. A key stays pinned to the backend its
+// joins were sent to while that backend is healthy, even if the ring has moved on (e.g. while it drains).
+// Backends never report their keys, so pins come from the joins routed here.
+public class RoomDirectory {
+
+    private final int virtualNodes;
+    private final Map<String, BackendNode> backends;
+    private final long pinTtlNanos;
+    private final Map<String, Pin> pinnedRooms;
+    private TreeMap<Long, BackendNode> ring;
+
+    private record Pin(BackendNode node, long lastJoinNanos) {}
+
+    public RoomDirectory(int virtualNodes, long pinTtlMillis) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Virtual node count must be positive");
+        }
+        this.virtualNodes = virtualNodes;
+        this.pinTtlNanos = pinTtlMillis * 1_000_000L;
+        this.backends = new HashMap<>();
+        this.pinnedRooms = new HashMap<>();
+        this.ring = new TreeMap<>();
+    }
+
+    public synchronized void addBackend(BackendNode node) {
+        backends.put(node.getId(), node);
+        rebuild();
+    }
+
+    public synchronized void removeBackend(String id) {
+        BackendNode removed = backends.remove(id);
+        if (removed != null) {
+            pinnedRooms.values().removeIf(pin -> pin.node() == removed);
+            rebuild();
+        }
+    }
+
+    public synchronized BackendNode getBackend(String id) {
+        return backends.get(id);
+    }
+
+    public synchronized List<BackendNode> getBackends() {
+        return new ArrayList<>(backends.values());
+    }
+
+    // Called whenever a node's health or draining state changes
+    synchronized void rebuild() {
+        TreeMap<Long, BackendNode> next = new TreeMap<>();
+        for (BackendNode node : backends.values()) {
+            if (!node.isRoutable()) continue;
+            for (int i = 0; i < virtualNodes; i++) {
+                next.put(hash(node.getId() + "#" + i), node);
+            }
+        }
+        ring = next;
+    }
+
+    // After each health check. Rooms only take joins while they wait, so a pin no join has used for the
+    // TTL is for a room that has started or closed; and a backend reporting no rooms holds none.
+    synchronized void updatePins(BackendNode node, long nowNanos) {
+        boolean empty = node.getRoomCount() == 0;
+        pinnedRooms.values().removeIf(pin -> (empty && pin.node() == node)
+            || nowNanos - pin.lastJoinNanos() > pinTtlNanos);
+    }
+
+    // Null when no backend can take the room
+    public synchronized BackendNode route(String roomKey) {
+        if (roomKey == null) {
+            return leastLoaded();
+        }
+
+        Pin pin = pinnedRooms.get(roomKey);
+        BackendNode target;
+        if (pin != null && pin.node().isHealthy()) {
+            target = pin.node();
+        } else if (ring.isEmpty()) {
+            return null;
+        } else {
+            Map.Entry<Long, BackendNode> entry = ring.ceilingEntry(hash(roomKey));
+            target = entry != null ? entry.getValue() : ring.firstEntry().getValue();
+        }
+        pinnedRooms.put(roomKey, new Pin(target, System.nanoTime()));
+        return target;
+    }
+
+    // Unkeyed players are matchmade by the backend itself, so send them where most seats are free
+    private BackendNode leastLoaded() {
+        BackendNode best = null;
+        for (BackendNode node : backends.values()) {
+            if (node.isRoutable() && (best == null || node.getPlayerCount() < best.getPlayerCount())) {
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    public synchronized int getPinnedRoomCount() {
+        return pinnedRooms.size();
+    }
+
+    // FNV-1a followed by a 64-bit finalizer, so similar ids ("host:6001#1", "host:6001#2") spread evenly
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,63 @@
+package it.unibs.pajc.network.protocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class BitReader {
+
+    private final byte[] buffer;
+    private int bitPosition;
+
+    public BitReader(byte[] buffer) {
+        this.buffer = buffer;
+        this.bitPosition = 0;
+    }
+
+    public long readBits(int bits) throws IOException {
+        if (bitPosition + bits > buffer.length * 8) {
+            throw new EOFException("Read past end of bit stream");
+        }
+
+        long value = 0;
+        for (int i = 0; i < bits; i++) {
+            int bit = (buffer[bitPosition >>> 3] >>> (7 - (bitPosition & 7))) & 1;
+            value = (value << 1) | bit;
+            bitPosition++;
+        }
+        return value;
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readBits(1) != 0;
+    }
+
+    public long readVarLong() throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            long group = readBits(8);
+            value |= (group & 0x7F) << shift;
+            if ((group & 0x80) == 0) return value;
+            shift += 7;
+            if (shift > 63) throw new IOException("Malformed varint");
+        }
+    }
+
+    public int readVarInt() throws IOException {
+        return (int) readVarLong();
+    }
+
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readBits(64));
+    }
+
+    public String readString() throws IOException {
+        int length = readVarInt();
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) readBits(8);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,73 @@
+package it.unibs.pajc.network.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class BitWriter {
+
+    private byte[] buffer;
+    private int bitPosition;
+
+    public BitWriter() {
+        this(64);
+    }
+
+    public BitWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(1, initialCapacity)];
+        this.bitPosition = 0;
+    }
+
+    public void writeBits(long value, int bits) {
+        ensureCapacity(bits);
+        for (int i = bits - 1; i >= 0; i--) {
+            if (((value >>> i) & 1L) != 0) {
+                buffer[bitPosition >>> 3] |= (byte) (0x80 >>> (bitPosition & 7));
+            }
+            bitPosition++;
+        }
+    }
+
+    public void writeBoolean(boolean value) {
+        writeBits(value ? 1 : 0, 1);
+    }
+
+    // 7 data bits per group with a continuation flag, so small values stay small
+    public void writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            writeBits((value & 0x7F) | 0x80, 8);
+            value >>>= 7;
+        }
+        writeBits(value, 8);
+    }
+
+    public void writeVarInt(int value) {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    public void writeDouble(double value) {
+        writeBits(Double.doubleToLongBits(value), 64);
+    }
+
+    public void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        for (byte b : bytes) {
+            writeBits(b & 0xFF, 8);
+        }
+    }
+
+    public int getBitLength() {
+        return bitPosition;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, (bitPosition + 7) >>> 3);
+    }
+
+    private void ensureCapacity(int extraBits) {
+        int requiredBytes = (bitPosition + extraBits + 7) >>> 3;
+        if (requiredBytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(requiredBytes, buffer.length * 2));
+        }
+    }
+}
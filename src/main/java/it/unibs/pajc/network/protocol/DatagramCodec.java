@@ -0,0 +1,176 @@
+package it.unibs.pajc.network.protocol;
+
+import it.unibs.pajc.core.Vector2D;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class DatagramCodec {
+
+    // Stays under the IPv6 minimum MTU once IP and UDP headers are added
+    public static final int MAX_DATAGRAM_SIZE = 1200;
+
+    public static final byte HELLO = 1;
+    public static final byte HELLO_ACK = 2;
+    public static final byte HELLO_CONFIRM = 3;
+    public static final byte MESSAGE = 4;
+    public static final byte STATE_FRAGMENT = 5;
+
+    // Client to server: type, playerId, token
+    public static final int CLIENT_HEADER_SIZE = 1 + 4 + 8;
+    // Server to client fragments: type, sequence, fragment index, fragment count
+    public static final int FRAGMENT_HEADER_SIZE = 1 + 8 + 1 + 1;
+    public static final int MAX_FRAGMENT_PAYLOAD = MAX_DATAGRAM_SIZE - FRAGMENT_HEADER_SIZE;
+    public static final int MAX_FRAGMENTS = 255;
+
+    // Direction and sequence of one input
+    private static final int INPUT_SIZE = 8 + 8 + 8;
+    private static final MessageType[] MESSAGE_TYPES = MessageType.values();
+
+    private DatagramCodec() {}
+
+    // Only unreliable traffic travels over UDP, so only those messages have a datagram form: a type
+    // byte and fixed-width fields, never Java serialization of whatever a datagram happens to contain
+    public static byte[] encodeMessage(Message message) {
+        ByteBuffer out;
+        switch (message.getType()) {
+            case STATE_DELTA -> {
+                StateDeltaMessage delta = (StateDeltaMessage) message;
+                byte[] payload = delta.getPayload();
+                byte[] collisions = delta.getCollisionPayload();
+                out = ByteBuffer.allocate(1 + 8 + 8 + 4 + payload.length + 4 + collisions.length);
+                out.put(typeCode(message)).putLong(delta.getServerTick()).putLong(delta.getBaselineTick());
+                out.putInt(payload.length).put(payload);
+                out.putInt(collisions.length).put(collisions);
+            }
+            case PLAYER_INPUT -> {
+                out = ByteBuffer.allocate(1 + 4 + INPUT_SIZE);
+                out.put(typeCode(message)).putInt(message.getSenderId());
+                putInput(out, (InputMessage) message);
+            }
+            case PLAYER_INPUT_BATCH -> {
+                List<InputMessage> inputs = ((InputBatchMessage) message).getInputs();
+                out = ByteBuffer.allocate(1 + 4 + 2 + inputs.size() * INPUT_SIZE);
+                out.put(typeCode(message)).putInt(message.getSenderId()).putShort((short) inputs.size());
+                for (InputMessage input : inputs) {
+                    putInput(out, input);
+                }
+            }
+            case STATE_ACK -> {
+                out = ByteBuffer.allocate(1 + 4 + 8);
+                out.put(typeCode(message)).putInt(message.getSenderId())
+                    .putLong(((StateAckMessage) message).getAckedTick());
+            }
+            default -> throw new IllegalArgumentException("No datagram form for " + message.getType());
+        }
+        return out.array();
+    }
+
+    public static Message decodeMessage(byte[] bytes, int offset, int length) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(bytes, offset, length);
+        try {
+            int code = in.get() & 0xFF;
+            if (code >= MESSAGE_TYPES.length) {
+                throw new StreamCorruptedException("Unknown datagram message type " + code);
+            }
+
+            Message message = switch (MESSAGE_TYPES[code]) {
+                case STATE_DELTA -> {
+                    long serverTick = in.getLong();
+                    long baselineTick = in.getLong();
+                    byte[] payload = getBytes(in);
+                    yield new StateDeltaMessage(serverTick, baselineTick, payload, getBytes(in));
+                }
+                case PLAYER_INPUT -> getInput(in, in.getInt());
+                case PLAYER_INPUT_BATCH -> {
+                    int senderId = in.getInt();
+                    int count = in.getShort() & 0xFFFF;
+                    if (count * INPUT_SIZE > in.remaining()) {
+                        throw new BufferUnderflowException();
+                    }
+                    List<InputMessage> inputs = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        inputs.add(getInput(in, senderId));
+                    }
+                    yield new InputBatchMessage(senderId, inputs);
+                }
+                case STATE_ACK -> new StateAckMessage(in.getInt(), in.getLong());
+                default -> throw new StreamCorruptedException("No datagram form for " + MESSAGE_TYPES[code]);
+            };
+
+            if (in.hasRemaining()) {
+                throw new StreamCorruptedException(in.remaining() + " bytes left over after " + message.getType());
+            }
+            return message;
+        } catch (BufferUnderflowException e) {
+            throw new StreamCorruptedException("Truncated datagram message");
+        }
+    }
+
+    private static byte typeCode(Message message) {
+        return (byte) message.getType().ordinal();
+    }
+
+    private static void putInput(ByteBuffer out, InputMessage input) {
+        // Exact doubles: the server simulates with exactly the direction the client predicted with
+        Vector2D direction = input.getMovementDirection();
+        out.putDouble(direction.x()).putDouble(direction.y()).putLong(input.getInputSequence());
+    }
+
+    private static InputMessage getInput(ByteBuffer in, int senderId) {
+        Vector2D direction = new Vector2D(in.getDouble(), in.getDouble());
+        return new InputMessage(senderId, direction, in.getLong());
+    }
+
+    private static byte[] getBytes(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+
+    public static ByteBuffer clientPacket(byte type, int playerId, long token, byte[] payload) {
+        ByteBuffer packet = ByteBuffer.allocate(CLIENT_HEADER_SIZE + payload.length);
+        packet.put(type).putInt(playerId).putLong(token).put(payload);
+        packet.flip();
+        return packet;
+    }
+
+    public static ByteBuffer serverPacket(byte type) {
+        ByteBuffer packet = ByteBuffer.allocate(1);
+        packet.put(type).flip();
+        return packet;
+    }
+
+    // Splits a frame into MTU-sized datagrams that share a sequence number
+    public static List<ByteBuffer> fragment(long sequence, ByteBuffer frame) {
+        int length = frame.remaining();
+        int count = Math.max(1, (length + MAX_FRAGMENT_PAYLOAD - 1) / MAX_FRAGMENT_PAYLOAD);
+        if (count > MAX_FRAGMENTS) {
+            throw new IllegalArgumentException("Frame too large for datagram transport: " + length + " bytes");
+        }
+
+        List<ByteBuffer> fragments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int chunk = Math.min(MAX_FRAGMENT_PAYLOAD, frame.remaining());
+            ByteBuffer packet = ByteBuffer.allocate(FRAGMENT_HEADER_SIZE + chunk);
+            packet.put(STATE_FRAGMENT).putLong(sequence).put((byte) i).put((byte) count);
+
+            ByteBuffer slice = frame.slice();
+            slice.limit(chunk);
+            packet.put(slice);
+            frame.position(frame.position() + chunk);
+
+            packet.flip();
+            fragments.add(packet);
+        }
+        return fragments;
+    }
+}
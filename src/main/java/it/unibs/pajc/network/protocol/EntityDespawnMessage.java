@@ -0,0 +1,18 @@
+package it.unibs.pajc.network.protocol;
+
+// Sent reliably when an entity leaves a client's area of interest; it may come back later
+public class EntityDespawnMessage extends Message {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int entityId;
+
+    public EntityDespawnMessage(int entityId) {
+        super(MessageType.ENTITY_DESPAWN, 0);
+        this.entityId = entityId;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+}
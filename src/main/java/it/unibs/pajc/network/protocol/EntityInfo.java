@@ -0,0 +1,41 @@
+package it.unibs.pajc.network.protocol;
+
+import it.unibs.pajc.core.Particle;
+import javafx.scene.paint.Color;
+
+import java.io.Serializable;
+
+// Attributes that never change for an entity: sent once when it spawns, then cached by the client
+public class EntityInfo implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public final int entityId;
+    public final int playerId;
+    public final String name;
+    public final double radius;
+    public final double mass;
+    public final double red, green, blue;
+
+    public EntityInfo(int entityId, int playerId, String name, double radius, double mass, Color color) {
+        this.entityId = entityId;
+        this.playerId = playerId;
+        this.name = name;
+        this.radius = radius;
+        this.mass = mass;
+        this.red = color.getRed();
+        this.green = color.getGreen();
+        this.blue = color.getBlue();
+    }
+
+    public Color getColor() {
+        return Color.color(red, green, blue);
+    }
+
+    public Particle createParticle(StateUpdateMessage.PlayerState state) {
+        Particle particle = new Particle("entity-" + entityId, playerId, mass, radius, getColor(),
+            state.getPosition(), state.getVelocity());
+        particle.setHandle(entityId);
+        return particle;
+    }
+}
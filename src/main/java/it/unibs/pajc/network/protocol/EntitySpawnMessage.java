@@ -0,0 +1,24 @@
+package it.unibs.pajc.network.protocol;
+
+// Sent reliably when an entity enters a client's area of interest, together with its static attributes
+public class EntitySpawnMessage extends Message {
+
+    private static final long serialVersionUID = 1L;
+
+    private final EntityInfo info;
+    private final StateUpdateMessage.PlayerState state;
+
+    public EntitySpawnMessage(EntityInfo info, StateUpdateMessage.PlayerState state) {
+        super(MessageType.ENTITY_SPAWN, 0);
+        this.info = info;
+        this.state = state;
+    }
+
+    public EntityInfo getInfo() {
+        return info;
+    }
+
+    public StateUpdateMessage.PlayerState getState() {
+        return state;
+    }
+}
@@ -0,0 +1,88 @@
+package it.unibs.pajc.network.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Reassembles sequenced fragments, keeping only frames newer than the last one delivered
+public class FragmentAssembler {
+
+    private static final int MAX_PENDING_FRAMES = 4;
+
+    private final Map<Long, PendingFrame> pending;
+    private long lastDelivered;
+
+    public FragmentAssembler() {
+        this.pending = new TreeMap<>();
+        this.lastDelivered = Long.MIN_VALUE;
+    }
+
+    // Expects the datagram positioned just after the type byte; returns the frame once complete
+    public synchronized byte[] accept(ByteBuffer datagram) {
+        long sequence = datagram.getLong();
+        int index = datagram.get() & 0xFF;
+        int count = datagram.get() & 0xFF;
+
+        if (sequence <= lastDelivered || count == 0 || index >= count) {
+            return null;
+        }
+
+        PendingFrame frame = pending.computeIfAbsent(sequence, s -> new PendingFrame(count));
+        if (frame.fragments.length != count) {
+            return null;
+        }
+        frame.add(index, datagram);
+
+        if (!frame.isComplete()) {
+            evictOldest();
+            return null;
+        }
+
+        lastDelivered = sequence;
+        pending.keySet().removeIf(s -> s <= sequence);
+        return frame.join();
+    }
+
+    private void evictOldest() {
+        Iterator<Long> sequences = pending.keySet().iterator();
+        while (pending.size() > MAX_PENDING_FRAMES && sequences.hasNext()) {
+            sequences.next();
+            sequences.remove();
+        }
+    }
+
+    private static class PendingFrame {
+        private final byte[][] fragments;
+        private int received;
+        private int totalLength;
+
+        private PendingFrame(int count) {
+            this.fragments = new byte[count][];
+        }
+
+        private void add(int index, ByteBuffer datagram) {
+            if (fragments[index] != null) return;
+
+            byte[] chunk = new byte[datagram.remaining()];
+            datagram.get(chunk);
+            fragments[index] = chunk;
+            received++;
+            totalLength += chunk.length;
+        }
+
+        private boolean isComplete() {
+            return received == fragments.length;
+        }
+
+        private byte[] join() {
+            byte[] joined = new byte[totalLength];
+            int offset = 0;
+            for (byte[] chunk : fragments) {
+                System.arraycopy(chunk, 0, joined, offset, chunk.length);
+                offset += chunk.length;
+            }
+            return joined;
+        }
+    }
+}
@@ -6,16 +6,26 @@ public class GameStartMessage extends Message {
 
     private static final long serialVersionUID = 1L;
 
+    private final EntityInfo[] entities;
     private final List<StateUpdateMessage.PlayerState> initialStates;
     private final double worldWidth;
     private final double worldHeight;
+    private final int simulationHz;
+    private final int snapshotHz;
 
-    public GameStartMessage(List<StateUpdateMessage.PlayerState> initialStates,
-                           double worldWidth, double worldHeight) {
+    public GameStartMessage(List<EntityInfo> entities, List<StateUpdateMessage.PlayerState> initialStates,
+                           double worldWidth, double worldHeight, int simulationHz, int snapshotHz) {
         super(MessageType.GAME_START, 0);
+        this.entities = entities.toArray(new EntityInfo[0]);
         this.initialStates = initialStates;
         this.worldWidth = worldWidth;
         this.worldHeight = worldHeight;
+        this.simulationHz = simulationHz;
+        this.snapshotHz = snapshotHz;
+    }
+
+    public List<EntityInfo> getEntities() {
+        return List.of(entities);
     }
 
     public List<StateUpdateMessage.PlayerState> getInitialStates() {
@@ -29,4 +39,13 @@ public class GameStartMessage extends Message {
     public double getWorldHeight() {
         return worldHeight;
     }
+
+    // The room's rates; the client predicts and interpolates with these rather than its own defaults
+    public int getSimulationHz() {
+        return simulationHz;
+    }
+
+    public int getSnapshotHz() {
+        return snapshotHz;
+    }
 }
@@ -0,0 +1,11 @@
+package it.unibs.pajc.network.protocol;
+
+// Sent by the gateway instead of a join; the server answers with HealthStatusMessage and closes
+public class HealthCheckMessage extends Message {
+
+    private static final long serialVersionUID = 1L;
+
+    public HealthCheckMessage() {
+        super(MessageType.HEALTH_CHECK, 0);
+    }
+}
@@ -0,0 +1,36 @@
+package it.unibs.pajc.network.protocol;
+
+public class HealthStatusMessage extends Message {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int playerCount;
+    private final int roomCount;
+    private final int maxRooms;
+    private final boolean draining;
+
+    // Anyone can probe the client port, so only load is reported: room keys would let them join private rooms
+    public HealthStatusMessage(int playerCount, int roomCount, int maxRooms, boolean draining) {
+        super(MessageType.HEALTH_STATUS, 0);
+        this.playerCount = playerCount;
+        this.roomCount = roomCount;
+        this.maxRooms = maxRooms;
+        this.draining = draining;
+    }
+
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    public int getRoomCount() {
+        return roomCount;
+    }
+
+    public int getMaxRooms() {
+        return maxRooms;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+}
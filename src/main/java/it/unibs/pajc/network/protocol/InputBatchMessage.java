@@ -0,0 +1,44 @@
+package it.unibs.pajc.network.protocol;
+
+import it.unibs.pajc.core.Vector2D;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Several inputs from one client packed into a single frame, oldest first
+public class InputBatchMessage extends Message {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double[] dirX;
+    private final double[] dirY;
+    private final long[] inputSequences;
+
+    public InputBatchMessage(int playerId, List<InputMessage> inputs) {
+        super(MessageType.PLAYER_INPUT_BATCH, playerId);
+        int count = inputs.size();
+        this.dirX = new double[count];
+        this.dirY = new double[count];
+        this.inputSequences = new long[count];
+
+        for (int i = 0; i < count; i++) {
+            InputMessage input = inputs.get(i);
+            dirX[i] = input.getMovementDirection().x();
+            dirY[i] = input.getMovementDirection().y();
+            inputSequences[i] = input.getInputSequence();
+        }
+    }
+
+    public List<InputMessage> getInputs() {
+        List<InputMessage> inputs = new ArrayList<>(inputSequences.length);
+        for (int i = 0; i < inputSequences.length; i++) {
+            inputs.add(new InputMessage(getSenderId(),
+                new Vector2D(dirX[i], dirY[i]), inputSequences[i]));
+        }
+        return inputs;
+    }
+
+    public int size() {
+        return inputSequences.length;
+    }
+}
@@ -8,13 +8,20 @@ public class JoinMessage extends Message {
 
     private final String playerName;
     private final double red, green, blue;
+    private final String roomKey;
 
     public JoinMessage(String playerName, Color preferredColor) {
+        this(playerName, preferredColor, null);
+    }
+
+    // Players sending the same room key are seated in the same room; null lets the server choose
+    public JoinMessage(String playerName, Color preferredColor, String roomKey) {
         super(MessageType.JOIN_REQUEST, -1);
         this.playerName = playerName;
         this.red = preferredColor.getRed();
         this.green = preferredColor.getGreen();
         this.blue = preferredColor.getBlue();
+        this.roomKey = roomKey;
     }
 
     public String getPlayerName() {
@@ -24,4 +31,8 @@ public class JoinMessage extends Message {
     public Color getPreferredColor() {
         return Color.color(red, green, blue);
     }
+
+    public String getRoomKey() {
+        return roomKey;
+    }
 }
@@ -8,22 +8,24 @@ public class JoinResponseMessage extends Message {
     private final int assignedPlayerId;
     private final String rejectionReason;
     private final int currentPlayerCount;
+    private final long udpToken;
 
     public JoinResponseMessage(boolean accepted, int assignedPlayerId,
-                               String rejectionReason, int currentPlayerCount) {
+                               String rejectionReason, int currentPlayerCount, long udpToken) {
         super(MessageType.JOIN_RESPONSE, 0);
         this.accepted = accepted;
         this.assignedPlayerId = assignedPlayerId;
         this.rejectionReason = rejectionReason;
         this.currentPlayerCount = currentPlayerCount;
+        this.udpToken = udpToken;
     }
 
-    public static JoinResponseMessage accept(int playerId, int playerCount) {
-        return new JoinResponseMessage(true, playerId, null, playerCount);
+    public static JoinResponseMessage accept(int playerId, int playerCount, long udpToken) {
+        return new JoinResponseMessage(true, playerId, null, playerCount, udpToken);
     }
 
     public static JoinResponseMessage reject(String reason) {
-        return new JoinResponseMessage(false, -1, reason, 0);
+        return new JoinResponseMessage(false, -1, reason, 0, 0);
     }
 
     public boolean isAccepted() {
@@ -41,4 +43,8 @@ public class JoinResponseMessage extends Message {
     public int getCurrentPlayerCount() {
         return currentPlayerCount;
     }
+
+    public long getUdpToken() {
+        return udpToken;
+    }
 }
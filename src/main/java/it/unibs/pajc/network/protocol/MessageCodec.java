@@ -0,0 +1,74 @@
+package it.unibs.pajc.network.protocol;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+public final class MessageCodec {
+
+    public static final int HEADER_SIZE = 4;
+    public static final int MAX_FRAME_SIZE = 1 << 20;
+
+    private MessageCodec() {}
+
+    public static byte[] serialize(Message message) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(message);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Message deserialize(byte[] bytes, int offset, int length) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+            return (Message) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new InvalidObjectException("Unknown message payload: " + e.getMessage());
+        }
+    }
+
+    // Length-prefixed frame, flipped and ready to be written to a channel
+    public static ByteBuffer encodeFrame(Message message) {
+        return ByteBuffer.wrap(encodeFrameBytes(message));
+    }
+
+    public static byte[] encodeFrameBytes(Message message) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            bytes.write(new byte[HEADER_SIZE]);
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(message);
+            }
+
+            byte[] frame = bytes.toByteArray();
+            ByteBuffer.wrap(frame).putInt(0, frame.length - HEADER_SIZE);
+            return frame;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void writeFrame(DataOutputStream out, Message message) throws IOException {
+        byte[] payload = serialize(message);
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    public static Message readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        checkFrameLength(length);
+
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return deserialize(payload, 0, length);
+    }
+
+    public static void checkFrameLength(int length) throws IOException {
+        if (length <= 0 || length > MAX_FRAME_SIZE) {
+            throw new StreamCorruptedException("Invalid frame length: " + length);
+        }
+    }
+}
@@ -4,10 +4,18 @@ public enum MessageType {
     JOIN_REQUEST,
     JOIN_RESPONSE,
     PLAYER_INPUT,
+    PLAYER_INPUT_BATCH,
     STATE_UPDATE,
+    STATE_DELTA,
+    STATE_ACK,
     COLLISION_EVENT,
     PLAYER_LEFT,
+    ENTITY_SPAWN,
+    ENTITY_DESPAWN,
     GAME_START,
     PING,
-    PONG
+    PONG,
+    REDIRECT,
+    HEALTH_CHECK,
+    HEALTH_STATUS
 }
@@ -0,0 +1,88 @@
+package it.unibs.pajc.network.protocol;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Simulates packet loss, latency and jitter on outgoing datagrams, e.g. over loopback in tests
+public class NetworkConditioner {
+
+    public static final NetworkConditioner NONE = new NetworkConditioner(0, 0, 0);
+
+    private final double lossRate;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private ScheduledExecutorService scheduler;
+
+    public NetworkConditioner(double lossRate, long latencyMillis, long jitterMillis) {
+        if (lossRate < 0 || lossRate > 1) {
+            throw new IllegalArgumentException("Loss rate must be between 0 and 1: " + lossRate);
+        }
+        this.lossRate = lossRate;
+        this.latencyMillis = Math.max(0, latencyMillis);
+        this.jitterMillis = Math.max(0, jitterMillis);
+    }
+
+    public void send(DatagramChannel channel, ByteBuffer packet, SocketAddress target) throws IOException {
+        if (isPassThrough()) {
+            channel.send(packet, target);
+            return;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < lossRate) {
+            return;
+        }
+
+        ByteBuffer copy = ByteBuffer.allocate(packet.remaining());
+        copy.put(packet).flip();
+
+        long delay = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0);
+        scheduler().schedule(() -> {
+            try {
+                channel.send(copy, target);
+            } catch (IOException ignored) {
+                // Dropped like any other datagram
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isPassThrough() {
+        return lossRate == 0 && latencyMillis == 0 && jitterMillis == 0;
+    }
+
+    private synchronized ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "Network-Conditioner");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scheduler;
+    }
+
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public double getLossRate() {
+        return lossRate;
+    }
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public long getJitterMillis() {
+        return jitterMillis;
+    }
+}
@@ -0,0 +1,32 @@
+package it.unibs.pajc.network.protocol;
+
+// Timestamps are System.nanoTime() values: only meaningful on the host that produced them
+public class PingMessage extends Message {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long clientSendNanos;
+    private final long reportedRttNanos;
+    private final long interpolationDelayNanos;
+
+    public PingMessage(int playerId, long clientSendNanos, long reportedRttNanos, long interpolationDelayNanos) {
+        super(MessageType.PING, playerId);
+        this.clientSendNanos = clientSendNanos;
+        this.reportedRttNanos = reportedRttNanos;
+        this.interpolationDelayNanos = interpolationDelayNanos;
+    }
+
+    public long getClientSendNanos() {
+        return clientSendNanos;
+    }
+
+    // The client's current smoothed RTT, so the server can report it without pinging back
+    public long getReportedRttNanos() {
+        return reportedRttNanos;
+    }
+
+    // How far behind the newest snapshot the client draws other entities; used for lag compensation
+    public long getInterpolationDelayNanos() {
+        return interpolationDelayNanos;
+    }
+}
@@ -0,0 +1,35 @@
+package it.unibs.pajc.network.protocol;
+
+public class PongMessage extends Message {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long echoedClientNanos;
+    private final long serverNanos;
+    private final long serverTick;
+    private final long tickNanos;
+
+    public PongMessage(long echoedClientNanos, long serverNanos, long serverTick, long tickNanos) {
+        super(MessageType.PONG, 0);
+        this.echoedClientNanos = echoedClientNanos;
+        this.serverNanos = serverNanos;
+        this.serverTick = serverTick;
+        this.tickNanos = tickNanos;
+    }
+
+    public long getEchoedClientNanos() {
+        return echoedClientNanos;
+    }
+
+    public long getServerNanos() {
+        return serverNanos;
+    }
+
+    public long getServerTick() {
+        return serverTick;
+    }
+
+    public long getTickNanos() {
+        return tickNanos;
+    }
+}
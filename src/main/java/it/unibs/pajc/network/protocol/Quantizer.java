@@ -0,0 +1,92 @@
+package it.unibs.pajc.network.protocol;
+
+import java.io.IOException;
+
+public class Quantizer {
+
+    private final double min;
+    private final double max;
+    private final int bits;
+    private final long maxLevel;
+
+    // Symmetric ranges: an odd number of levels centred on zero, so 0 and +/-v round-trip exactly
+    private final boolean centred;
+    private final long centreLevel;
+    private final double step;
+
+    // bits == 0 disables quantization and sends the raw double
+    public Quantizer(double min, double max, int bits) {
+        this(min, max, bits, false);
+    }
+
+    private Quantizer(double min, double max, int bits, boolean centred) {
+        if (bits < 0 || bits > 32) {
+            throw new IllegalArgumentException("Quantization bits must be between 0 and 32: " + bits);
+        }
+        this.min = min;
+        this.max = max;
+        this.bits = bits;
+        this.centred = centred;
+        // A centred grid leaves the top code unused to get an odd level count
+        this.maxLevel = centred ? (1L << bits) - 2 : (1L << bits) - 1;
+        this.centreLevel = maxLevel / 2;
+        this.step = centred ? max / centreLevel : (max - min) / maxLevel;
+    }
+
+    public static Quantizer symmetric(double range, int bits) {
+        return new Quantizer(-range, range, bits, true);
+    }
+
+    public long quantize(double value) {
+        double clamped = Math.max(min, Math.min(max, value));
+        if (centred) {
+            long magnitude = Math.round(Math.abs(clamped) / step);
+            return clamped < 0 ? centreLevel - magnitude : centreLevel + magnitude;
+        }
+        return Math.round((clamped - min) / (max - min) * maxLevel);
+    }
+
+    public double dequantize(long level) {
+        if (centred) {
+            return (level - centreLevel) * step;
+        }
+        return min + (max - min) * level / maxLevel;
+    }
+
+    public double round(double value) {
+        return bits == 0 ? value : dequantize(quantize(value));
+    }
+
+    // Snaps to the grid level at or below the value's magnitude. State that is snapped every tick
+    // needs this: rounding to nearest hands back any change smaller than half a step (e.g. damping
+    // of a slow particle), so it would never settle.
+    public double roundTowardZero(double value) {
+        if (bits == 0) return value;
+        long level = quantize(value);
+        double rounded = dequantize(level);
+        if (Math.abs(rounded) > Math.abs(value)) {
+            rounded = dequantize(level + (rounded > 0 ? -1 : 1));
+        }
+        return rounded;
+    }
+
+    public void write(BitWriter out, double value) {
+        if (bits == 0) {
+            out.writeDouble(value);
+        } else {
+            out.writeBits(quantize(value), bits);
+        }
+    }
+
+    public double read(BitReader in) throws IOException {
+        return bits == 0 ? in.readDouble() : dequantize(in.readBits(bits));
+    }
+
+    public int getBits() {
+        return bits == 0 ? 64 : bits;
+    }
+
+    public double getStep() {
+        return step;
+    }
+}
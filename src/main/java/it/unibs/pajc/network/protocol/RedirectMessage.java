@@ -0,0 +1,24 @@
+package it.unibs.pajc.network.protocol;
+
+// Gateway answer to a join: repeat the join against this backend, which hosts the room
+public class RedirectMessage extends Message {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String host;
+    private final int port;
+
+    public RedirectMessage(String host, int port) {
+        super(MessageType.REDIRECT, 0);
+        this.host = host;
+        this.port = port;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+}
@@ -0,0 +1,219 @@
+package it.unibs.pajc.network.protocol;
+
+import it.unibs.pajc.collision.CollisionEvent;
+import it.unibs.pajc.core.PhysicsConstants;
+import it.unibs.pajc.core.Vector2D;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public final class SnapshotCodec {
+
+    // Entities are keyed by their varint handle; static attributes travel once in EntityInfo
+    private static final int FIELD_POSITION = 1;
+    private static final int FIELD_VELOCITY = 1 << 1;
+    private static final int FIELD_LAST_INPUT = 1 << 2;
+    private static final int FIELD_COUNT = 3;
+    private static final int ALL_FIELDS = (1 << FIELD_COUNT) - 1;
+
+    private static final Quantizer POSITION_X = new Quantizer(
+        0, PhysicsConstants.WORLD_WIDTH, PhysicsConstants.POSITION_QUANTIZATION_BITS);
+    private static final Quantizer POSITION_Y = new Quantizer(
+        0, PhysicsConstants.WORLD_HEIGHT, PhysicsConstants.POSITION_QUANTIZATION_BITS);
+    // Collisions can push a player past the input speed cap; relative velocities and impact speeds
+    // can reach twice the top speed too
+    private static final Quantizer VELOCITY = Quantizer.symmetric(
+        2 * PhysicsConstants.MAX_PLAYER_SPEED, PhysicsConstants.VELOCITY_QUANTIZATION_BITS);
+    private static final Quantizer RELATIVE_VELOCITY = Quantizer.symmetric(
+        2 * PhysicsConstants.MAX_PLAYER_SPEED, PhysicsConstants.VELOCITY_QUANTIZATION_BITS);
+    private static final Quantizer IMPACT_SPEED = new Quantizer(
+        0, 2 * PhysicsConstants.MAX_PLAYER_SPEED, PhysicsConstants.VELOCITY_QUANTIZATION_BITS - 1);
+
+    private SnapshotCodec() {}
+
+    public static Vector2D quantizePosition(Vector2D position) {
+        return new Vector2D(POSITION_X.round(position.x()), POSITION_Y.round(position.y()));
+    }
+
+    // Toward zero, so velocities snapped every tick still decay to rest under damping
+    public static Vector2D quantizeVelocity(Vector2D velocity) {
+        return new Vector2D(VELOCITY.roundTowardZero(velocity.x()), VELOCITY.roundTowardZero(velocity.y()));
+    }
+
+    // A null baseline produces a keyframe containing every field of every entity
+    public static byte[] encode(WorldSnapshot baseline, WorldSnapshot current) {
+        List<StateUpdateMessage.PlayerState> changed = new ArrayList<>();
+        List<Integer> masks = new ArrayList<>();
+
+        for (StateUpdateMessage.PlayerState state : current.getStates().values()) {
+            StateUpdateMessage.PlayerState previous = baseline != null ? baseline.get(state.entityId) : null;
+            int mask = changedFields(previous, state);
+            if (mask != 0) {
+                changed.add(state);
+                masks.add(mask);
+            }
+        }
+
+        List<Integer> removed = new ArrayList<>();
+        if (baseline != null) {
+            for (Integer entityId : baseline.getStates().keySet()) {
+                if (current.get(entityId) == null) {
+                    removed.add(entityId);
+                }
+            }
+        }
+
+        BitWriter out = new BitWriter();
+
+        out.writeVarInt(changed.size());
+        for (int i = 0; i < changed.size(); i++) {
+            writeState(out, changed.get(i), masks.get(i));
+        }
+
+        out.writeVarInt(removed.size());
+        for (int entityId : removed) {
+            out.writeVarInt(entityId);
+        }
+
+        return out.toByteArray();
+    }
+
+    public static WorldSnapshot decode(WorldSnapshot baseline, long tick, byte[] payload) throws IOException {
+        Map<Integer, StateUpdateMessage.PlayerState> states = new TreeMap<>();
+        if (baseline != null) {
+            states.putAll(baseline.getStates());
+        }
+
+        BitReader in = new BitReader(payload);
+
+        int changedCount = in.readVarInt();
+        for (int i = 0; i < changedCount; i++) {
+            int entityId = in.readVarInt();
+            int mask = (int) in.readBits(FIELD_COUNT);
+            StateUpdateMessage.PlayerState previous = states.get(entityId);
+
+            if (previous == null && mask != ALL_FIELDS) {
+                throw new IOException("Delta for unknown entity " + entityId + " in tick " + tick);
+            }
+
+            states.put(entityId, readState(in, entityId, mask, previous));
+        }
+
+        int removedCount = in.readVarInt();
+        for (int i = 0; i < removedCount; i++) {
+            states.remove(in.readVarInt());
+        }
+
+        return new WorldSnapshot(tick, states.values());
+    }
+
+    // Exact size of one entity's entry in a delta against previous; 0 when nothing changed
+    public static int encodedBits(StateUpdateMessage.PlayerState previous, StateUpdateMessage.PlayerState state) {
+        int mask = changedFields(previous, state);
+        if (mask == 0) return 0;
+
+        BitWriter out = new BitWriter(32);
+        writeState(out, state, mask);
+        return out.getBitLength();
+    }
+
+    // Size of an entity's entry in a delta's removal list
+    public static int removalBits(int entityId) {
+        BitWriter out = new BitWriter(8);
+        out.writeVarInt(entityId);
+        return out.getBitLength();
+    }
+
+    private static int changedFields(StateUpdateMessage.PlayerState previous, StateUpdateMessage.PlayerState state) {
+        if (previous == null) return ALL_FIELDS;
+
+        int mask = 0;
+        if (previous.posX != state.posX || previous.posY != state.posY) mask |= FIELD_POSITION;
+        if (previous.velX != state.velX || previous.velY != state.velY) mask |= FIELD_VELOCITY;
+        if (previous.lastProcessedInput != state.lastProcessedInput
+                || previous.ticksSinceInput != state.ticksSinceInput) {
+            mask |= FIELD_LAST_INPUT;
+        }
+        return mask;
+    }
+
+    private static void writeState(BitWriter out, StateUpdateMessage.PlayerState state, int mask) {
+        out.writeVarInt(state.entityId);
+        out.writeBits(mask, FIELD_COUNT);
+
+        if ((mask & FIELD_POSITION) != 0) {
+            POSITION_X.write(out, state.posX);
+            POSITION_Y.write(out, state.posY);
+        }
+        if ((mask & FIELD_VELOCITY) != 0) {
+            VELOCITY.write(out, state.velX);
+            VELOCITY.write(out, state.velY);
+        }
+        if ((mask & FIELD_LAST_INPUT) != 0) {
+            out.writeVarLong(state.lastProcessedInput);
+            out.writeVarInt(state.ticksSinceInput);
+        }
+    }
+
+    private static StateUpdateMessage.PlayerState readState(BitReader in, int entityId, int mask,
+                                                            StateUpdateMessage.PlayerState previous)
+            throws IOException {
+        Vector2D position = (mask & FIELD_POSITION) != 0
+            ? new Vector2D(POSITION_X.read(in), POSITION_Y.read(in))
+            : previous.getPosition();
+        Vector2D velocity = (mask & FIELD_VELOCITY) != 0
+            ? new Vector2D(VELOCITY.read(in), VELOCITY.read(in))
+            : previous.getVelocity();
+
+        long lastInput;
+        int ticksSinceInput;
+        if ((mask & FIELD_LAST_INPUT) != 0) {
+            lastInput = in.readVarLong();
+            ticksSinceInput = in.readVarInt();
+        } else {
+            lastInput = previous.lastProcessedInput;
+            ticksSinceInput = previous.ticksSinceInput;
+        }
+
+        return new StateUpdateMessage.PlayerState(entityId, position, velocity, lastInput, ticksSinceInput);
+    }
+
+    public static byte[] encodeCollisions(List<CollisionEvent> collisions) {
+        BitWriter out = new BitWriter(16);
+        int count = collisions != null ? collisions.size() : 0;
+        out.writeVarInt(count);
+
+        for (int i = 0; i < count; i++) {
+            CollisionEvent event = collisions.get(i);
+            out.writeVarInt(event.entityA());
+            out.writeVarInt(event.entityB());
+            POSITION_X.write(out, event.contactPoint().x());
+            POSITION_Y.write(out, event.contactPoint().y());
+            RELATIVE_VELOCITY.write(out, event.relativeVelocity().x());
+            RELATIVE_VELOCITY.write(out, event.relativeVelocity().y());
+            IMPACT_SPEED.write(out, event.impactSpeed());
+        }
+        return out.toByteArray();
+    }
+
+    // Timestamps are local: the receiver stamps events when it decodes them
+    public static List<CollisionEvent> decodeCollisions(byte[] payload) throws IOException {
+        BitReader in = new BitReader(payload);
+        int count = in.readVarInt();
+        // Not presized: a corrupt count should run out of bits, not memory
+        List<CollisionEvent> collisions = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            int entityA = in.readVarInt();
+            int entityB = in.readVarInt();
+            Vector2D contact = new Vector2D(POSITION_X.read(in), POSITION_Y.read(in));
+            Vector2D relative = new Vector2D(RELATIVE_VELOCITY.read(in), RELATIVE_VELOCITY.read(in));
+            double impact = IMPACT_SPEED.read(in);
+            collisions.add(CollisionEvent.create(entityA, entityB, contact, relative, impact));
+        }
+        return List.copyOf(collisions);
+    }
+}
@@ -0,0 +1,35 @@
+package it.unibs.pajc.network.protocol;
+
+import java.util.Arrays;
+
+public class SnapshotHistory {
+
+    private final WorldSnapshot[] ring;
+
+    public SnapshotHistory(int capacity) {
+        this.ring = new WorldSnapshot[capacity];
+    }
+
+    public synchronized void add(WorldSnapshot snapshot) {
+        ring[slot(snapshot.getTick())] = snapshot;
+    }
+
+    // Returns null once the tick has been overwritten, which forces a keyframe
+    public synchronized WorldSnapshot get(long tick) {
+        if (tick < 0) return null;
+        WorldSnapshot snapshot = ring[slot(tick)];
+        return snapshot != null && snapshot.getTick() == tick ? snapshot : null;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(ring, null);
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    private int slot(long tick) {
+        return (int) Math.floorMod(tick, (long) ring.length);
+    }
+}
@@ -0,0 +1,17 @@
+package it.unibs.pajc.network.protocol;
+
+public class StateAckMessage extends Message {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long ackedTick;
+
+    public StateAckMessage(int playerId, long ackedTick) {
+        super(MessageType.STATE_ACK, playerId);
+        this.ackedTick = ackedTick;
+    }
+
+    public long getAckedTick() {
+        return ackedTick;
+    }
+}
@@ -0,0 +1,73 @@
+package it.unibs.pajc.network.protocol;
+
+import it.unibs.pajc.collision.CollisionEvent;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.List;
+
+public class StateDeltaMessage extends Message {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final long KEYFRAME = -1;
+
+    private final long serverTick;
+    private final long baselineTick;
+    private final byte[] payload;
+    // Bit-packed with entity handles rather than serialized CollisionEvent objects
+    private final byte[] collisionPayload;
+    // Decoded once on arrival, so every reader sees the same events and timestamps
+    private transient List<CollisionEvent> recentCollisions;
+
+    public StateDeltaMessage(long serverTick, long baselineTick, byte[] payload,
+                             List<CollisionEvent> recentCollisions) {
+        super(MessageType.STATE_DELTA, 0);
+        this.serverTick = serverTick;
+        this.baselineTick = baselineTick;
+        this.payload = payload;
+        this.collisionPayload = SnapshotCodec.encodeCollisions(recentCollisions);
+        this.recentCollisions = recentCollisions != null ? List.copyOf(recentCollisions) : List.of();
+    }
+
+    // Rebuilt from a datagram, collisions still packed
+    StateDeltaMessage(long serverTick, long baselineTick, byte[] payload, byte[] collisionPayload)
+            throws IOException {
+        super(MessageType.STATE_DELTA, 0);
+        this.serverTick = serverTick;
+        this.baselineTick = baselineTick;
+        this.payload = payload;
+        this.collisionPayload = collisionPayload;
+        this.recentCollisions = SnapshotCodec.decodeCollisions(collisionPayload);
+    }
+
+    // A corrupt collision payload fails the whole frame rather than quietly dropping the events
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        recentCollisions = SnapshotCodec.decodeCollisions(collisionPayload);
+    }
+
+    public long getServerTick() {
+        return serverTick;
+    }
+
+    public long getBaselineTick() {
+        return baselineTick;
+    }
+
+    public boolean isKeyframe() {
+        return baselineTick == KEYFRAME;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    byte[] getCollisionPayload() {
+        return collisionPayload;
+    }
+
+    public List<CollisionEvent> getRecentCollisions() {
+        return recentCollisions;
+    }
+}
@@ -34,30 +34,26 @@ public class StateUpdateMessage extends Message {
         return recentCollisions;
     }
 
+    // Per-tick state only; static attributes live in EntityInfo
     public static class PlayerState implements Serializable {
         private static final long serialVersionUID = 1L;
 
-        public final int playerId;
-        public final String particleId;
+        public final int entityId;
         public final double posX, posY;
         public final double velX, velY;
-        public final double radius;
-        public final double red, green, blue;
         public final long lastProcessedInput;
+        // Ticks the server has simulated with lastProcessedInput held, used to replay the remainder
+        public final int ticksSinceInput;
 
-        public PlayerState(int playerId, String particleId, Vector2D position, Vector2D velocity,
-                          double radius, double red, double green, double blue, long lastProcessedInput) {
-            this.playerId = playerId;
-            this.particleId = particleId;
+        public PlayerState(int entityId, Vector2D position, Vector2D velocity,
+                          long lastProcessedInput, int ticksSinceInput) {
+            this.entityId = entityId;
             this.posX = position.x();
             this.posY = position.y();
             this.velX = velocity.x();
             this.velY = velocity.y();
-            this.radius = radius;
-            this.red = red;
-            this.green = green;
-            this.blue = blue;
             this.lastProcessedInput = lastProcessedInput;
+            this.ticksSinceInput = ticksSinceInput;
         }
 
         public Vector2D getPosition() {
@@ -0,0 +1,38 @@
+package it.unibs.pajc.network.protocol;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class WorldSnapshot {
+
+    private final long tick;
+    private final Map<Integer, StateUpdateMessage.PlayerState> states;
+
+    public WorldSnapshot(long tick, Collection<StateUpdateMessage.PlayerState> playerStates) {
+        this.tick = tick;
+        Map<Integer, StateUpdateMessage.PlayerState> byId = new TreeMap<>();
+        for (StateUpdateMessage.PlayerState state : playerStates) {
+            byId.put(state.entityId, state);
+        }
+        this.states = Collections.unmodifiableMap(byId);
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public StateUpdateMessage.PlayerState get(int entityId) {
+        return states.get(entityId);
+    }
+
+    public Map<Integer, StateUpdateMessage.PlayerState> getStates() {
+        return states;
+    }
+
+    public List<StateUpdateMessage.PlayerState> toList() {
+        return List.copyOf(states.values());
+    }
+}
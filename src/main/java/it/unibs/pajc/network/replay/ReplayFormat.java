@@ -0,0 +1,252 @@
+package it.unibs.pajc.network.replay;
+
+import it.unibs.pajc.core.Vector2D;
+import it.unibs.pajc.network.protocol.BitReader;
+import it.unibs.pajc.network.protocol.BitWriter;
+import it.unibs.pajc.network.protocol.EntityInfo;
+import it.unibs.pajc.network.protocol.SnapshotCodec;
+import it.unibs.pajc.network.protocol.StateUpdateMessage;
+import it.unibs.pajc.network.protocol.WorldSnapshot;
+import it.unibs.pajc.network.server.ServerGameState;
+import javafx.scene.paint.Color;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// On-disk layout of a recorded match: a directory of segment files, each starting with a fixed
+// header and followed by records of the form
+//   int payloadLength | byte type | long tick | payload
+// Records never span segments. A zero type byte (the unwritten tail of a mapping) or the end of the
+// file ends a segment.
+public final class ReplayFormat {
+
+    public static final int MAGIC = 0x504A5250; // "PJRP"
+    public static final short VERSION = 2;
+    public static final int SEGMENT_HEADER_SIZE = 32;
+    public static final int RECORD_HEADER_SIZE = 4 + 1 + 8;
+
+    // Entity table and the state before the first tick
+    public static final byte START = 1;
+    // Inputs applied before simulating the tick
+    public static final byte INPUTS = 2;
+    // Entities that left before the tick was simulated
+    public static final byte DESPAWN = 3;
+    // Full state after the tick
+    public static final byte KEYFRAME = 4;
+    public static final byte END = 5;
+    // Lag-compensated hits applied while simulating the tick
+    public static final byte COMPENSATION = 6;
+
+    public record SegmentHeader(int roomId, int segmentIndex, int simulationHz) {}
+
+    public record RecordedInput(int playerId, Vector2D direction, long sequence) {}
+
+    // Held directions are part of the state: inputs stay applied until replaced
+    public record Keyframe(List<StateUpdateMessage.PlayerState> states, Map<Integer, Vector2D> heldDirections) {}
+
+    public record Start(String roomKey, List<EntityInfo> entities, Keyframe keyframe) {}
+
+    private ReplayFormat() {}
+
+    public static String segmentFileName(int segmentIndex) {
+        return String.format("segment-%05d.replay", segmentIndex);
+    }
+
+    public static void writeSegmentHeader(ByteBuffer buffer, SegmentHeader header) {
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) SEGMENT_HEADER_SIZE);
+        buffer.putInt(header.roomId());
+        buffer.putInt(header.segmentIndex());
+        buffer.putInt(header.simulationHz());
+        buffer.position(SEGMENT_HEADER_SIZE);
+    }
+
+    public static SegmentHeader readSegmentHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < SEGMENT_HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new StreamCorruptedException("Not a replay segment");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported replay version " + version);
+        }
+        int headerSize = buffer.getShort();
+        SegmentHeader header = new SegmentHeader(buffer.getInt(), buffer.getInt(), buffer.getInt());
+        buffer.position(headerSize);
+        return header;
+    }
+
+    public static byte[] encodeStart(String roomKey, List<EntityInfo> entities, long tick, Keyframe keyframe) {
+        BitWriter out = new BitWriter(256);
+        out.writeString(roomKey != null ? roomKey : "");
+        out.writeVarInt(entities.size());
+        for (EntityInfo info : entities) {
+            out.writeVarInt(info.entityId);
+            out.writeVarInt(info.playerId);
+            out.writeString(info.name);
+            out.writeDouble(info.radius);
+            out.writeDouble(info.mass);
+            out.writeDouble(info.red);
+            out.writeDouble(info.green);
+            out.writeDouble(info.blue);
+        }
+        writeKeyframe(out, tick, keyframe);
+        return out.toByteArray();
+    }
+
+    public static Start decodeStart(long tick, byte[] payload) throws IOException {
+        BitReader in = new BitReader(payload);
+        String roomKey = in.readString();
+        int count = in.readVarInt();
+        List<EntityInfo> entities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int entityId = in.readVarInt();
+            int playerId = in.readVarInt();
+            String name = in.readString();
+            double radius = in.readDouble();
+            double mass = in.readDouble();
+            Color color = Color.color(in.readDouble(), in.readDouble(), in.readDouble());
+            entities.add(new EntityInfo(entityId, playerId, name, radius, mass, color));
+        }
+        return new Start(roomKey.isEmpty() ? null : roomKey, entities, readKeyframe(in, tick));
+    }
+
+    public static byte[] encodeInputs(List<RecordedInput> inputs) {
+        BitWriter out = new BitWriter(16 * inputs.size());
+        out.writeVarInt(inputs.size());
+        for (RecordedInput input : inputs) {
+            out.writeVarInt(input.playerId());
+            out.writeVarLong(input.sequence());
+            writeDirection(out, input.direction());
+        }
+        return out.toByteArray();
+    }
+
+    public static List<RecordedInput> decodeInputs(byte[] payload) throws IOException {
+        BitReader in = new BitReader(payload);
+        int count = in.readVarInt();
+        List<RecordedInput> inputs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int playerId = in.readVarInt();
+            long sequence = in.readVarLong();
+            inputs.add(new RecordedInput(playerId, readDirection(in), sequence));
+        }
+        return inputs;
+    }
+
+    public static byte[] encodeDespawns(List<Integer> entityIds) {
+        BitWriter out = new BitWriter(4 * entityIds.size() + 1);
+        out.writeVarInt(entityIds.size());
+        for (int entityId : entityIds) {
+            out.writeVarInt(entityId);
+        }
+        return out.toByteArray();
+    }
+
+    public static List<Integer> decodeDespawns(byte[] payload) throws IOException {
+        BitReader in = new BitReader(payload);
+        int count = in.readVarInt();
+        List<Integer> entityIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entityIds.add(in.readVarInt());
+        }
+        return entityIds;
+    }
+
+    // Impulses are stored exactly, so repeating them gives bit-identical velocities
+    public static byte[] encodeHits(List<ServerGameState.CompensatedHit> hits) {
+        BitWriter out = new BitWriter(20 * hits.size() + 1);
+        out.writeVarInt(hits.size());
+        for (ServerGameState.CompensatedHit hit : hits) {
+            out.writeVarInt(hit.entityId());
+            out.writeVarInt(hit.otherEntityId());
+            out.writeDouble(hit.impulse().x());
+            out.writeDouble(hit.impulse().y());
+        }
+        return out.toByteArray();
+    }
+
+    public static List<ServerGameState.CompensatedHit> decodeHits(byte[] payload) throws IOException {
+        BitReader in = new BitReader(payload);
+        int count = in.readVarInt();
+        List<ServerGameState.CompensatedHit> hits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int entityId = in.readVarInt();
+            int otherEntityId = in.readVarInt();
+            Vector2D impulse = new Vector2D(in.readDouble(), in.readDouble());
+            hits.add(new ServerGameState.CompensatedHit(entityId, otherEntityId, impulse));
+        }
+        return hits;
+    }
+
+    public static byte[] encodeKeyframe(long tick, Keyframe keyframe) {
+        BitWriter out = new BitWriter(64 + 16 * keyframe.states().size());
+        writeKeyframe(out, tick, keyframe);
+        return out.toByteArray();
+    }
+
+    public static Keyframe decodeKeyframe(long tick, byte[] payload) throws IOException {
+        return readKeyframe(new BitReader(payload), tick);
+    }
+
+    // Entity states use the snapshot keyframe encoding: the server keeps its state on that grid, so
+    // nothing is lost
+    private static void writeKeyframe(BitWriter out, long tick, Keyframe keyframe) {
+        byte[] states = SnapshotCodec.encode(null, new WorldSnapshot(tick, keyframe.states()));
+        out.writeVarInt(states.length);
+        for (byte b : states) {
+            out.writeBits(b & 0xFF, 8);
+        }
+
+        out.writeVarInt(keyframe.heldDirections().size());
+        for (Map.Entry<Integer, Vector2D> entry : keyframe.heldDirections().entrySet()) {
+            out.writeVarInt(entry.getKey());
+            writeDirection(out, entry.getValue());
+        }
+    }
+
+    private static Keyframe readKeyframe(BitReader in, long tick) throws IOException {
+        byte[] states = new byte[in.readVarInt()];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = (byte) in.readBits(8);
+        }
+        WorldSnapshot snapshot = SnapshotCodec.decode(null, tick, states);
+
+        int count = in.readVarInt();
+        Map<Integer, Vector2D> held = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            held.put(in.readVarInt(), readDirection(in));
+        }
+        return new Keyframe(snapshot.toList(), held);
+    }
+
+    // Keyboard directions are -1, 0 or 1 per axis and take 5 bits; anything else is stored exactly
+    private static void writeDirection(BitWriter out, Vector2D direction) {
+        if (isUnitStep(direction.x()) && isUnitStep(direction.y())) {
+            out.writeBoolean(true);
+            out.writeBits((long) direction.x() + 1, 2);
+            out.writeBits((long) direction.y() + 1, 2);
+        } else {
+            out.writeBoolean(false);
+            out.writeDouble(direction.x());
+            out.writeDouble(direction.y());
+        }
+    }
+
+    private static Vector2D readDirection(BitReader in) throws IOException {
+        if (in.readBoolean()) {
+            return new Vector2D(in.readBits(2) - 1, in.readBits(2) - 1);
+        }
+        return new Vector2D(in.readDouble(), in.readDouble());
+    }
+
+    // -0.0 is stored exactly, so a re-simulated state hashes the same as the original
+    private static boolean isUnitStep(double value) {
+        return value == -1 || value == 1 || Double.doubleToRawLongBits(value) == 0L;
+    }
+}
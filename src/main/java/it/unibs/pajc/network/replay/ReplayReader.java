@@ -0,0 +1,345 @@
+package it.unibs.pajc.network.replay;
+
+import it.unibs.pajc.core.Vector2D;
+import it.unibs.pajc.network.protocol.EntityInfo;
+import it.unibs.pajc.network.protocol.StateUpdateMessage;
+import it.unibs.pajc.network.server.ServerGameState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Plays back a recorded match. Segments are mapped read-only and read in place, so opening a long
+// match only touches record headers. Opening builds an index of every keyframe (the start record
+// counts as one); seek() binary-searches it, restores the nearest keyframe at or before the target
+// and re-simulates the recorded inputs from there. Stepping onto a later keyframe snaps to it, which
+// also corrects any drift (e.g. from lag compensation, which the recording does not capture).
+// Not thread-safe: use from one thread, e.g. the FX thread.
+public class ReplayReader implements Closeable {
+
+    private final List<FileChannel> channels;
+    private final List<MappedByteBuffer> segments;
+    private final int roomId;
+    private final int simulationHz;
+    private final double tickTime;
+
+    private final Map<Integer, EntityInfo> entities;
+    private String roomKey;
+
+    // Keyframe index: parallel arrays sorted by tick
+    private long[] keyframeTicks;
+    private int[] keyframeSegments;
+    private int[] keyframeOffsets;
+    private int keyframeCount;
+    private long firstTick;
+    private long lastTick;
+
+    // Playback cursor: the state after currentTick, and the first record not applied yet
+    private ServerGameState state;
+    private long currentTick;
+    private int cursorSegment;
+    private int cursorOffset;
+    private double maxResyncError;
+
+    private ReplayReader(List<FileChannel> channels, List<MappedByteBuffer> segments,
+                         ReplayFormat.SegmentHeader header) {
+        this.channels = channels;
+        this.segments = segments;
+        this.roomId = header.roomId();
+        this.simulationHz = header.simulationHz();
+        this.tickTime = 1.0 / header.simulationHz();
+        this.entities = new HashMap<>();
+        this.keyframeTicks = new long[16];
+        this.keyframeSegments = new int[16];
+        this.keyframeOffsets = new int[16];
+    }
+
+    public static ReplayReader open(Path matchDirectory) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(matchDirectory)) {
+            paths = files.filter(p -> p.getFileName().toString().endsWith(".replay")).sorted().toList();
+        }
+        if (paths.isEmpty()) {
+            throw new IOException("No replay segments in " + matchDirectory);
+        }
+
+        List<FileChannel> channels = new ArrayList<>();
+        List<MappedByteBuffer> segments = new ArrayList<>();
+        ReplayFormat.SegmentHeader first = null;
+        try {
+            for (Path path : paths) {
+                FileChannel channel = FileChannel.open(path);
+                channels.add(channel);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                ReplayFormat.SegmentHeader header = ReplayFormat.readSegmentHeader(buffer.duplicate());
+                if (header.segmentIndex() != segments.size()) {
+                    throw new StreamCorruptedException("Missing replay segment " + segments.size());
+                }
+                if (first == null) {
+                    first = header;
+                }
+                segments.add(buffer);
+            }
+
+            ReplayReader reader = new ReplayReader(channels, segments, first);
+            reader.buildIndex();
+            reader.seek(reader.firstTick);
+            return reader;
+        } catch (IOException | RuntimeException e) {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+            throw e;
+        }
+    }
+
+    // Walks the record headers only, skipping payloads
+    private void buildIndex() throws IOException {
+        boolean started = false;
+        for (int segment = 0; segment < segments.size(); segment++) {
+            MappedByteBuffer buffer = segments.get(segment);
+            int offset = ReplayFormat.SEGMENT_HEADER_SIZE;
+            while (hasRecord(buffer, offset)) {
+                int length = buffer.getInt(offset);
+                byte type = buffer.get(offset + 4);
+                long tick = buffer.getLong(offset + 5);
+
+                if (type == ReplayFormat.START) {
+                    ReplayFormat.Start start = ReplayFormat.decodeStart(tick, payload(buffer, offset));
+                    for (EntityInfo info : start.entities()) {
+                        entities.put(info.entityId, info);
+                    }
+                    roomKey = start.roomKey();
+                    firstTick = tick;
+                    started = true;
+                }
+                if (type == ReplayFormat.START || type == ReplayFormat.KEYFRAME) {
+                    addKeyframe(tick, segment, offset);
+                }
+                lastTick = Math.max(lastTick, tick);
+                offset += ReplayFormat.RECORD_HEADER_SIZE + length;
+            }
+        }
+        if (!started) {
+            throw new StreamCorruptedException("Replay has no start record");
+        }
+    }
+
+    private void addKeyframe(long tick, int segment, int offset) {
+        if (keyframeCount == keyframeTicks.length) {
+            keyframeTicks = Arrays.copyOf(keyframeTicks, keyframeCount * 2);
+            keyframeSegments = Arrays.copyOf(keyframeSegments, keyframeCount * 2);
+            keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframeCount * 2);
+        }
+        keyframeTicks[keyframeCount] = tick;
+        keyframeSegments[keyframeCount] = segment;
+        keyframeOffsets[keyframeCount] = offset;
+        keyframeCount++;
+    }
+
+    // A record cut short (e.g. by a crash mid-write) ends the segment too
+    private static boolean hasRecord(MappedByteBuffer buffer, int offset) {
+        return offset + ReplayFormat.RECORD_HEADER_SIZE <= buffer.limit()
+            && buffer.get(offset + 4) != 0
+            && offset + ReplayFormat.RECORD_HEADER_SIZE + buffer.getInt(offset) <= buffer.limit();
+    }
+
+    private static byte[] payload(MappedByteBuffer buffer, int offset) {
+        byte[] payload = new byte[buffer.getInt(offset)];
+        buffer.get(offset + ReplayFormat.RECORD_HEADER_SIZE, payload);
+        return payload;
+    }
+
+    // Index of the last keyframe at or before tick
+    private int keyframeIndexFor(long tick) {
+        int index = Arrays.binarySearch(keyframeTicks, 0, keyframeCount, tick);
+        return index >= 0 ? index : Math.max(0, -index - 2);
+    }
+
+    // Moves playback to the given tick (clamped to the recording) and returns the tick reached
+    public long seek(long tick) throws IOException {
+        tick = Math.max(firstTick, Math.min(lastTick, tick));
+        int keyframe = keyframeIndexFor(tick);
+
+        // Going forward within the same keyframe interval: just keep simulating
+        if (state == null || tick < currentTick || keyframeIndexFor(currentTick) != keyframe) {
+            restoreKeyframe(keyframe);
+        }
+        while (currentTick < tick && step()) {
+        }
+        return currentTick;
+    }
+
+    private void restoreKeyframe(int index) throws IOException {
+        int segment = keyframeSegments[index];
+        int offset = keyframeOffsets[index];
+        MappedByteBuffer buffer = segments.get(segment);
+        long tick = buffer.getLong(offset + 5);
+        byte[] payload = payload(buffer, offset);
+
+        ReplayFormat.Keyframe keyframe = buffer.get(offset + 4) == ReplayFormat.START
+            ? ReplayFormat.decodeStart(tick, payload).keyframe()
+            : ReplayFormat.decodeKeyframe(tick, payload);
+        applyKeyframe(tick, keyframe);
+
+        cursorSegment = segment;
+        cursorOffset = offset + ReplayFormat.RECORD_HEADER_SIZE + payload.length;
+    }
+
+    private void applyKeyframe(long tick, ReplayFormat.Keyframe keyframe) {
+        ServerGameState restored = new ServerGameState(simulationHz);
+        // Compensation needs the latency measured live; the hits it produced are repeated from the recording
+        restored.setLagCompensation(false);
+        for (StateUpdateMessage.PlayerState playerState : keyframe.states()) {
+            EntityInfo info = entities.get(playerState.entityId);
+            if (info != null) {
+                restored.restorePlayer(info, playerState, keyframe.heldDirections().get(playerState.entityId));
+            }
+        }
+        restored.setServerTick(tick);
+        restored.startGame();
+
+        state = restored;
+        currentTick = tick;
+    }
+
+    // Advances one tick: applies that tick's departures and inputs, simulates, and snaps to the tick's
+    // keyframe if there is one. Returns false at the end of the recording.
+    public boolean step() throws IOException {
+        if (currentTick >= lastTick) return false;
+        long target = currentTick + 1;
+        boolean simulated = false;
+
+        while (nextRecord()) {
+            MappedByteBuffer buffer = segments.get(cursorSegment);
+            long tick = buffer.getLong(cursorOffset + 5);
+            if (tick > target) break;
+
+            byte type = buffer.get(cursorOffset + 4);
+            byte[] payload = payload(buffer, cursorOffset);
+            cursorOffset += ReplayFormat.RECORD_HEADER_SIZE + payload.length;
+
+            switch (type) {
+                case ReplayFormat.DESPAWN -> {
+                    for (int entityId : ReplayFormat.decodeDespawns(payload)) {
+                        EntityInfo info = entities.get(entityId);
+                        if (info != null) {
+                            state.removePlayer(info.playerId);
+                        }
+                    }
+                }
+                case ReplayFormat.INPUTS -> {
+                    for (ReplayFormat.RecordedInput input : ReplayFormat.decodeInputs(payload)) {
+                        state.applyInput(input.playerId(), input.direction(), input.sequence());
+                    }
+                }
+                case ReplayFormat.COMPENSATION -> state.repeatCompensatedHits(ReplayFormat.decodeHits(payload));
+                case ReplayFormat.KEYFRAME -> {
+                    if (!simulated) {
+                        state.update(tickTime);
+                        simulated = true;
+                    }
+                    resync(tick, ReplayFormat.decodeKeyframe(tick, payload));
+                }
+                default -> {
+                }
+            }
+        }
+
+        if (!simulated) {
+            state.update(tickTime);
+        }
+        currentTick = target;
+        return true;
+    }
+
+    // Moves the cursor past segment ends; false once no records are left
+    private boolean nextRecord() {
+        while (cursorSegment < segments.size()) {
+            if (hasRecord(segments.get(cursorSegment), cursorOffset)) {
+                return true;
+            }
+            cursorSegment++;
+            cursorOffset = ReplayFormat.SEGMENT_HEADER_SIZE;
+        }
+        return false;
+    }
+
+    private void resync(long tick, ReplayFormat.Keyframe keyframe) {
+        for (StateUpdateMessage.PlayerState recorded : keyframe.states()) {
+            EntityInfo info = entities.get(recorded.entityId);
+            ServerGameState.PlayerInfo simulated = info != null ? state.getPlayerInfo(info.playerId) : null;
+            if (simulated != null) {
+                double error = simulated.particle.getPosition().distanceTo(recorded.getPosition());
+                maxResyncError = Math.max(maxResyncError, error);
+            }
+        }
+        applyKeyframe(tick, keyframe);
+    }
+
+    public List<StateUpdateMessage.PlayerState> getStates() {
+        return state.getPlayerStates();
+    }
+
+    public Map<Integer, Vector2D> getHeldDirections() {
+        return state.getHeldDirections();
+    }
+
+    public EntityInfo getEntityInfo(int entityId) {
+        return entities.get(entityId);
+    }
+
+    public long getTick() {
+        return currentTick;
+    }
+
+    public long getFirstTick() {
+        return firstTick;
+    }
+
+    public long getLastTick() {
+        return lastTick;
+    }
+
+    public int getSimulationHz() {
+        return simulationHz;
+    }
+
+    public int getRoomId() {
+        return roomId;
+    }
+
+    public String getRoomKey() {
+        return roomKey;
+    }
+
+    public int getKeyframeCount() {
+        return keyframeCount;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    // Largest position difference seen between re-simulation and a recorded keyframe
+    public double getMaxResyncError() {
+        return maxResyncError;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (FileChannel channel : channels) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package it.unibs.pajc.network.replay;
+
+import it.unibs.pajc.network.protocol.EntityInfo;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Records every room of a server to disk. Room ticks only hand their data over: each record goes on a
+// lock-free queue together with the code that encodes it, and a single writer thread encodes and
+// appends it to the room's memory-mapped segments. A slow disk therefore backs up the queue, never
+// the game loop. The queue is bounded: past maxQueuedRecords, tick records are dropped and counted,
+// and the replay resyncs at the next keyframe that makes it in.
+public class ReplayRecorder {
+
+    private record PendingRecord(ReplaySegmentWriter target, byte type, long tick, Supplier<byte[]> payload) {}
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int keyframeIntervalMs;
+    private final int maxQueuedRecords;
+    private final Queue<PendingRecord> queue;
+    private final AtomicLong queued;
+    private final AtomicLong dropped;
+    private final Consumer<String> logger;
+    // Recordings started but not yet ended; only the writer thread touches it
+    private final Set<ReplaySegmentWriter> openWriters;
+
+    private volatile long written;
+    private volatile boolean running;
+    // Set while the writer is about to park, so enqueue only unparks it when it has to
+    private volatile boolean idle;
+    private volatile Thread writerThread;
+
+    public ReplayRecorder(Path directory, int segmentBytes, int keyframeIntervalMs, int maxQueuedRecords,
+                          Consumer<String> logger) {
+        if (maxQueuedRecords <= 0) {
+            throw new IllegalArgumentException("Replay queue must hold at least one record");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.keyframeIntervalMs = keyframeIntervalMs;
+        this.maxQueuedRecords = maxQueuedRecords;
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.queued = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.logger = logger;
+        this.openWriters = new HashSet<>();
+    }
+
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::writeLoop, "Replay-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // Writes out everything already queued, then closes the files of rooms still open. Rooms should be
+    // closed first: one that was not ends at its last record, without an END.
+    public void stop() {
+        running = false;
+        if (writerThread != null) {
+            LockSupport.unpark(writerThread);
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writerThread = null;
+        }
+    }
+
+    // Each match gets its own directory, named after the room and when it started
+    public RoomRecording openRoom(int roomId, String roomKey, int simulationHz, long tick,
+                                  List<EntityInfo> entities, ReplayFormat.Keyframe keyframe) {
+        Path matchDirectory = directory.resolve("room-" + roomId + "-" + System.currentTimeMillis());
+        ReplaySegmentWriter writer = new ReplaySegmentWriter(matchDirectory, roomId, simulationHz, segmentBytes);
+        int keyframeTicks = Math.max(1, simulationHz * keyframeIntervalMs / 1000);
+
+        enqueue(writer, ReplayFormat.START, tick, () -> ReplayFormat.encodeStart(roomKey, entities, tick, keyframe));
+        return new RoomRecording(this, writer, keyframeTicks);
+    }
+
+    // START and END always go in, or a recording would lose its header or never be closed
+    void enqueue(ReplaySegmentWriter target, byte type, long tick, Supplier<byte[]> payload) {
+        boolean control = type == ReplayFormat.START || type == ReplayFormat.END;
+        if (!control && getBacklog() >= maxQueuedRecords) {
+            if (dropped.getAndIncrement() == 0) {
+                logger.accept("Replay writer is falling behind; dropping records until it catches up");
+            }
+            return;
+        }
+
+        queue.offer(new PendingRecord(target, type, tick, payload));
+        queued.incrementAndGet();
+        if (idle) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    private void writeLoop() {
+        while (running || !queue.isEmpty()) {
+            PendingRecord record = queue.poll();
+            if (record == null) {
+                // Checked again after announcing the park, so a record offered meanwhile is not missed
+                idle = true;
+                if (running && queue.isEmpty()) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+                continue;
+            }
+            write(record);
+            written++;
+        }
+
+        // Rooms the server did not close first end here, cut at their last record
+        for (ReplaySegmentWriter writer : openWriters) {
+            try {
+                writer.close();
+                logger.accept("Replay " + writer.getDirectory() + " closed without an end record");
+            } catch (IOException e) {
+                logger.accept("Replay " + writer.getDirectory() + " failed: " + e.getMessage());
+            }
+        }
+        openWriters.clear();
+    }
+
+    private void write(PendingRecord record) {
+        ReplaySegmentWriter writer = record.target();
+        try {
+            if (record.type() == ReplayFormat.START) {
+                openWriters.add(writer);
+            }
+            writer.append(record.type(), record.tick(), record.payload().get());
+            if (record.type() == ReplayFormat.END) {
+                openWriters.remove(writer);
+                writer.close();
+                logger.accept(String.format("Replay %s: %d segment(s), %.1f KB, %.1f KB per minute",
+                    writer.getDirectory(), writer.getSegmentCount(), writer.getBytesWritten() / 1024.0,
+                    writer.getBytesPerMinute() / 1024.0));
+            }
+        } catch (IOException | RuntimeException e) {
+            // One broken recording must not stop the others
+            logger.accept("Replay " + writer.getDirectory() + " failed: " + e.getMessage());
+            openWriters.remove(writer);
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getQueuedRecords() {
+        return queued.get();
+    }
+
+    public long getWrittenRecords() {
+        return written;
+    }
+
+    public long getBacklog() {
+        return queued.get() - written;
+    }
+
+    public long getDroppedRecords() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,117 @@
+package it.unibs.pajc.network.replay;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Appends records to one match's segment files through memory mappings: each segment is mapped
+// whole when opened, so an append is a few puts into memory and the OS writes the pages back.
+// A full segment is flushed, trimmed to what was written and replaced by the next one.
+// Only the recorder's writer thread touches it; the counters are read by others.
+public class ReplaySegmentWriter {
+
+    private final Path directory;
+    private final int roomId;
+    private final int simulationHz;
+    private final int segmentBytes;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int segmentIndex = -1;
+    private boolean closed;
+
+    private volatile long bytesWritten;
+    private volatile int segmentCount;
+    private volatile long firstTick = -1;
+    private volatile long lastTick = -1;
+
+    public ReplaySegmentWriter(Path directory, int roomId, int simulationHz, int segmentBytes) {
+        if (segmentBytes <= ReplayFormat.SEGMENT_HEADER_SIZE + ReplayFormat.RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.roomId = roomId;
+        this.simulationHz = simulationHz;
+        this.segmentBytes = segmentBytes;
+    }
+
+    public void append(byte type, long tick, byte[] payload) throws IOException {
+        if (closed) return;
+
+        int recordSize = ReplayFormat.RECORD_HEADER_SIZE + payload.length;
+        if (buffer == null || buffer.remaining() < recordSize) {
+            // A record larger than a segment gets a segment of its own
+            roll(Math.max(segmentBytes, ReplayFormat.SEGMENT_HEADER_SIZE + recordSize));
+        }
+
+        buffer.putInt(payload.length);
+        buffer.put(type);
+        buffer.putLong(tick);
+        buffer.put(payload);
+
+        bytesWritten += recordSize;
+        if (firstTick < 0) firstTick = tick;
+        lastTick = Math.max(lastTick, tick);
+    }
+
+    private void roll(int size) throws IOException {
+        finishSegment();
+        if (segmentIndex < 0) {
+            Files.createDirectories(directory);
+        }
+
+        segmentIndex++;
+        Path path = directory.resolve(ReplayFormat.segmentFileName(segmentIndex));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        ReplayFormat.writeSegmentHeader(buffer, new ReplayFormat.SegmentHeader(roomId, segmentIndex, simulationHz));
+
+        bytesWritten += ReplayFormat.SEGMENT_HEADER_SIZE;
+        segmentCount = segmentIndex + 1;
+    }
+
+    private void finishSegment() throws IOException {
+        if (buffer == null) return;
+
+        int used = buffer.position();
+        buffer.force();
+        try {
+            // The unused tail is zeros, which readers treat as the end anyway; trimming just saves
+            // disk. Some platforms refuse to truncate a file that is still mapped.
+            channel.truncate(used);
+        } catch (IOException ignored) {
+        }
+        channel.close();
+        channel = null;
+        buffer = null;
+    }
+
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        finishSegment();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    // File size per minute of simulated play
+    public double getBytesPerMinute() {
+        long ticks = lastTick - firstTick;
+        if (firstTick < 0 || ticks <= 0) return 0;
+        return bytesWritten * 60.0 * simulationHz / ticks;
+    }
+}
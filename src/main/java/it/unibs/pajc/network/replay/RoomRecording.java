@@ -0,0 +1,56 @@
+package it.unibs.pajc.network.replay;
+
+import it.unibs.pajc.network.server.ServerGameState;
+
+import java.util.List;
+
+// What a room's tick uses to record itself. Every call only queues a record; encoding and file IO
+// happen on the recorder's writer thread.
+public class RoomRecording {
+
+    private final ReplayRecorder recorder;
+    private final ReplaySegmentWriter writer;
+    private final int keyframeTicks;
+    private volatile boolean closed;
+
+    RoomRecording(ReplayRecorder recorder, ReplaySegmentWriter writer, int keyframeTicks) {
+        this.recorder = recorder;
+        this.writer = writer;
+        this.keyframeTicks = keyframeTicks;
+    }
+
+    public void recordInputs(long tick, List<ReplayFormat.RecordedInput> inputs) {
+        if (closed || inputs.isEmpty()) return;
+        recorder.enqueue(writer, ReplayFormat.INPUTS, tick, () -> ReplayFormat.encodeInputs(inputs));
+    }
+
+    public void recordDespawns(long tick, List<Integer> entityIds) {
+        if (closed || entityIds.isEmpty()) return;
+        recorder.enqueue(writer, ReplayFormat.DESPAWN, tick, () -> ReplayFormat.encodeDespawns(entityIds));
+    }
+
+    public void recordHits(long tick, List<ServerGameState.CompensatedHit> hits) {
+        if (closed || hits.isEmpty()) return;
+        recorder.enqueue(writer, ReplayFormat.COMPENSATION, tick, () -> ReplayFormat.encodeHits(hits));
+    }
+
+    public boolean isKeyframeDue(long tick) {
+        return tick % keyframeTicks == 0;
+    }
+
+    public void recordKeyframe(long tick, ReplayFormat.Keyframe keyframe) {
+        if (closed) return;
+        recorder.enqueue(writer, ReplayFormat.KEYFRAME, tick, () -> ReplayFormat.encodeKeyframe(tick, keyframe));
+    }
+
+    // Records queued after this (e.g. from a tick still in flight) are dropped by the writer
+    public void close(long tick) {
+        if (closed) return;
+        closed = true;
+        recorder.enqueue(writer, ReplayFormat.END, tick, () -> new byte[0]);
+    }
+
+    public ReplaySegmentWriter getWriter() {
+        return writer;
+    }
+}
@@ -0,0 +1,123 @@
+package it.unibs.pajc.network.server;
+
+import it.unibs.pajc.network.protocol.*;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+public class BlockingServerTransport implements ServerTransport {
+
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+
+    private final GameServer server;
+    private final ExecutorService executor;
+
+    private ServerSocket serverSocket;
+    private Thread acceptThread;
+    private volatile boolean running;
+
+    public BlockingServerTransport(GameServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    @Override
+    public void start(int port) throws IOException {
+        serverSocket = new ServerSocket(port);
+        running = true;
+
+        acceptThread = new Thread(this::acceptClients, "Accept-Thread");
+        acceptThread.start();
+    }
+
+    private void acceptClients() {
+        while (running) {
+            try {
+                Socket clientSocket = serverSocket.accept();
+                // The handshake blocks on the client, so it must not run on the accept thread
+                executor.submit(() -> handleNewConnection(clientSocket));
+            } catch (RejectedExecutionException e) {
+                break;
+            } catch (SocketException e) {
+                if (running) {
+                    server.log("Socket exception: " + e.getMessage());
+                }
+            } catch (IOException e) {
+                if (running) {
+                    server.log("Error accepting client: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handleNewConnection(Socket socket) {
+        int admittedPlayerId = -1;
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            Message message = MessageCodec.readFrame(in);
+
+            if (message.getType() == MessageType.JOIN_REQUEST) {
+                JoinMessage joinMsg = (JoinMessage) message;
+                JoinResponseMessage response = server.admitPlayer(joinMsg);
+                if (response.isAccepted()) {
+                    admittedPlayerId = response.getAssignedPlayerId();
+                }
+
+                MessageCodec.writeFrame(out, response);
+                out.flush();
+
+                if (!response.isAccepted()) {
+                    socket.close();
+                    return;
+                }
+
+                socket.setSoTimeout(0);
+
+                ClientHandler handler = new ClientHandler(socket, server, response.getAssignedPlayerId(),
+                    joinMsg.getPlayerName(), in, out);
+                executor.submit(handler::writeLoop);
+                server.registerClient(handler);
+
+                // Keep reading on the thread that ran the handshake
+                handler.run();
+            } else if (message.getType() == MessageType.HEALTH_CHECK) {
+                MessageCodec.writeFrame(out, server.healthStatus());
+                out.flush();
+                socket.close();
+            } else {
+                socket.close();
+            }
+        } catch (IOException e) {
+            server.log("Error handling new connection: " + e.getMessage());
+            if (admittedPlayerId > 0) {
+                server.removePlayer(admittedPlayerId);
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+
+        try {
+            if (serverSocket != null && !serverSocket.isClosed()) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            server.log("Error closing server socket: " + e.getMessage());
+        }
+
+        executor.shutdownNow();
+    }
+}
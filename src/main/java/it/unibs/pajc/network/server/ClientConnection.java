@@ -0,0 +1,30 @@
+package it.unibs.pajc.network.server;
+
+import it.unibs.pajc.network.protocol.Message;
+
+public interface ClientConnection {
+
+    int MAX_QUEUED_FRAMES = 256;
+
+    int getPlayerId();
+
+    String getPlayerName();
+
+    void sendMessage(Message message);
+
+    // The connection retains the frame until it has been written; the caller keeps its own reference
+    void sendFrame(SharedFrame frame);
+
+    // State frames may be superseded by a newer one before they are written
+    void sendStateFrame(SharedFrame frame);
+
+    long getDroppedStateCount();
+
+    boolean isConnected();
+
+    void disconnect();
+
+    long getLastAckedTick();
+
+    void acknowledgeTick(long tick);
+}
@@ -4,40 +4,66 @@ import it.unibs.pajc.network.protocol.*;
 
 import java.io.*;
 import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
-public class ClientHandler implements Runnable {
+public class ClientHandler implements ClientConnection, Runnable {
 
     private final Socket socket;
-    private final ObjectInputStream in;
-    private final ObjectOutputStream out;
+    private final DataInputStream in;
+    private final DataOutputStream out;
     private final GameServer server;
     private final int playerId;
     private final String playerName;
 
-    private volatile boolean connected;
+    // Reliable frames queue up; state frames only keep the newest one
+    private final BlockingQueue<QueuedFrame> outbound;
+    private final AtomicReference<QueuedFrame> pendingState;
+    private final AtomicLong sendSequence;
+    private final AtomicLong droppedStates;
+
+    // A ReentrantLock rather than synchronized so a waiting writer does not pin a virtual thread's carrier
+    private final ReentrantLock writerLock;
+    private final Condition workAvailable;
+
+    private final AtomicBoolean connected;
+    // The reader and the UDP receiver both ack; a late, older ack must not move the baseline back
+    private final AtomicLong lastAckedTick;
 
     public ClientHandler(Socket socket, GameServer server, int playerId, String playerName,
-                        ObjectInputStream in, ObjectOutputStream out) {
+                        DataInputStream in, DataOutputStream out) {
         this.socket = socket;
         this.server = server;
         this.playerId = playerId;
         this.playerName = playerName;
         this.in = in;
         this.out = out;
-        this.connected = true;
+        this.outbound = new ArrayBlockingQueue<>(MAX_QUEUED_FRAMES);
+        this.pendingState = new AtomicReference<>();
+        this.sendSequence = new AtomicLong();
+        this.droppedStates = new AtomicLong();
+        this.writerLock = new ReentrantLock();
+        this.workAvailable = writerLock.newCondition();
+        this.connected = new AtomicBoolean(true);
+        this.lastAckedTick = new AtomicLong(StateDeltaMessage.KEYFRAME);
     }
 
     @Override
     public void run() {
         try {
-            while (connected && !socket.isClosed()) {
-                Message message = (Message) in.readObject();
-                processMessage(message);
+            while (connected.get() && !socket.isClosed()) {
+                Message message = MessageCodec.readFrame(in);
+                server.handleMessage(this, message);
             }
         } catch (EOFException e) {
             System.out.println("Client " + playerId + " disconnected");
-        } catch (IOException | ClassNotFoundException e) {
-            if (connected) {
+        } catch (IOException e) {
+            if (connected.get()) {
                 System.err.println("Error reading from client " + playerId + ": " + e.getMessage());
             }
         } finally {
@@ -45,37 +71,122 @@ public class ClientHandler implements Runnable {
         }
     }
 
-    private void processMessage(Message message) {
-        switch (message.getType()) {
-            case PLAYER_INPUT -> {
-                InputMessage input = (InputMessage) message;
-                server.handlePlayerInput(playerId, input);
-            }
-            case PING -> {
-                sendMessage(new PongMessage());
+    public void writeLoop() {
+        try {
+            SharedFrame frame;
+            while ((frame = nextFrame()) != null) {
+                try {
+                    frame.writeTo(out);
+                } finally {
+                    frame.release();
+                }
+
+                if (outbound.isEmpty() && pendingState.get() == null) {
+                    out.flush();
+                }
             }
-            default -> {
-                System.out.println("Unknown message type from client " + playerId + ": " + message.getType());
+        } catch (IOException e) {
+            if (connected.get()) {
+                System.err.println("Error sending to client " + playerId + ": " + e.getMessage());
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            disconnect();
+            releasePending();
         }
     }
 
-    public synchronized void sendMessage(Message message) {
-        if (!connected || socket.isClosed()) return;
+    private SharedFrame nextFrame() throws InterruptedException {
+        writerLock.lock();
+        try {
+            while (connected.get()) {
+                QueuedFrame next = QueuedFrame.takeNext(outbound, pendingState);
+                if (next != null) {
+                    return next.frame();
+                }
+                workAvailable.await();
+            }
+            return null;
+        } finally {
+            writerLock.unlock();
+        }
+    }
 
+    private void signalWriter() {
+        writerLock.lock();
         try {
-            out.writeObject(message);
-            out.flush();
-            out.reset();
-        } catch (IOException e) {
-            System.err.println("Error sending to client " + playerId + ": " + e.getMessage());
+            workAvailable.signal();
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    @Override
+    public void sendMessage(Message message) {
+        SharedFrame frame = SharedFrame.heap(message);
+        sendFrame(frame);
+        frame.release();
+    }
+
+    @Override
+    public void sendFrame(SharedFrame frame) {
+        if (!isConnected()) return;
+
+        if (!outbound.offer(queued(frame, true))) {
+            // Reliable messages are never dropped, so a client this far behind is cut off instead
+            frame.release();
+            System.err.println("Client " + playerId + " outbound queue full, disconnecting");
             disconnect();
+            return;
         }
+        if (!connected.get()) {
+            // The writer may have drained the queue before the offer; the frame must not be left in it
+            releasePending();
+            return;
+        }
+        signalWriter();
     }
 
+    @Override
+    public void sendStateFrame(SharedFrame frame) {
+        if (!isConnected()) return;
+
+        QueuedFrame stale = pendingState.getAndSet(queued(frame, false));
+        if (stale != null) {
+            stale.frame().release();
+            droppedStates.incrementAndGet();
+        }
+        if (!connected.get()) {
+            releasePending();
+            return;
+        }
+        signalWriter();
+    }
+
+    // Retains the frame for the queue and tags it with its place in the send order
+    private QueuedFrame queued(SharedFrame frame, boolean reliable) {
+        return new QueuedFrame(frame.retain(), sendSequence.incrementAndGet(), reliable);
+    }
+
+    // Safe from any thread: each poll hands a frame to exactly one caller
+    private void releasePending() {
+        QueuedFrame queued;
+        while ((queued = outbound.poll()) != null) {
+            queued.frame().release();
+        }
+
+        queued = pendingState.getAndSet(null);
+        if (queued != null) {
+            queued.frame().release();
+        }
+    }
+
+    @Override
     public void disconnect() {
-        if (!connected) return;
-        connected = false;
+        if (!connected.compareAndSet(true, false)) return;
+
+        signalWriter();
 
         try {
             if (in != null) in.close();
@@ -88,23 +199,33 @@ public class ClientHandler implements Runnable {
         server.removePlayer(playerId);
     }
 
+    @Override
     public boolean isConnected() {
-        return connected && !socket.isClosed();
+        return connected.get() && !socket.isClosed();
     }
 
+    @Override
+    public long getDroppedStateCount() {
+        return droppedStates.get();
+    }
+
+    @Override
+    public long getLastAckedTick() {
+        return lastAckedTick.get();
+    }
+
+    @Override
+    public void acknowledgeTick(long tick) {
+        lastAckedTick.accumulateAndGet(tick, Math::max);
+    }
+
+    @Override
     public int getPlayerId() {
         return playerId;
     }
 
+    @Override
     public String getPlayerName() {
         return playerName;
     }
-
-    private static class PongMessage extends Message {
-        private static final long serialVersionUID = 1L;
-
-        public PongMessage() {
-            super(MessageType.PONG, 0);
-        }
-    }
 }
@@ -0,0 +1,46 @@
+package it.unibs.pajc.network.server;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Headless multi-room backend, e.g. behind the gateway. Stopping the process (Ctrl+C, SIGTERM) drains
+// it first: no new rooms open and running matches get up to DRAIN_TIMEOUT_MS to finish.
+public class DedicatedServer {
+
+    private static final long DRAIN_TIMEOUT_MS = 30_000;
+    private static final long AUTO_START_DELAY_MS = 10_000;
+
+    // Usage: DedicatedServer <port> [maxRooms] [playersPerRoom] [replayDirectory]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: DedicatedServer <port> [maxRooms] [playersPerRoom] [replayDirectory]");
+            System.exit(1);
+        }
+
+        int port = Integer.parseInt(args[0]);
+        int maxRooms = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int playersPerRoom = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        GameServer server = new GameServer(ServerTransportType.NIO);
+        server.setMaxPlayers(playersPerRoom);
+        server.getMatchmaker().setMaxRooms(maxRooms);
+        server.getMatchmaker().setAutoStart(1, AUTO_START_DELAY_MS);
+        if (args.length > 3) {
+            server.setReplayDirectory(Path.of(args[3]));
+        }
+        server.start(port);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.setDraining(true);
+            long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+            while (server.getPlayerCount() > 0 && System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(250);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            server.stop();
+        }));
+    }
+}
@@ -0,0 +1,63 @@
+package it.unibs.pajc.network.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FrameBufferPool {
+
+    private static final int MIN_SIZE_SHIFT = 8;
+    private static final int MAX_SIZE_SHIFT = 16;
+    private static final int MAX_POOLED_PER_CLASS = 256;
+
+    private final List<Queue<ByteBuffer>> freeLists;
+    private final AtomicInteger[] pooledCounts;
+
+    public FrameBufferPool() {
+        int classes = MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1;
+        this.freeLists = new ArrayList<>(classes);
+        this.pooledCounts = new AtomicInteger[classes];
+        for (int i = 0; i < classes; i++) {
+            freeLists.add(new ConcurrentLinkedQueue<>());
+            pooledCounts[i] = new AtomicInteger();
+        }
+    }
+
+    // Buffers larger than the biggest size class are allocated directly and never pooled
+    public ByteBuffer acquire(int size) {
+        int sizeClass = sizeClass(size);
+        if (sizeClass < 0) {
+            return ByteBuffer.allocateDirect(size);
+        }
+
+        ByteBuffer buffer = freeLists.get(sizeClass).poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(1 << (sizeClass + MIN_SIZE_SHIFT));
+        }
+
+        pooledCounts[sizeClass].decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        int sizeClass = Integer.numberOfTrailingZeros(buffer.capacity()) - MIN_SIZE_SHIFT;
+        if (Integer.bitCount(buffer.capacity()) != 1 || sizeClass < 0 || sizeClass >= freeLists.size()) {
+            return;
+        }
+
+        if (pooledCounts[sizeClass].incrementAndGet() <= MAX_POOLED_PER_CLASS) {
+            freeLists.get(sizeClass).add(buffer);
+        } else {
+            pooledCounts[sizeClass].decrementAndGet();
+        }
+    }
+
+    private int sizeClass(int size) {
+        int shift = Math.max(MIN_SIZE_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(1, size - 1)));
+        return shift > MAX_SIZE_SHIFT ? -1 : shift - MIN_SIZE_SHIFT;
+    }
+}
@@ -0,0 +1,377 @@
+package it.unibs.pajc.network.server;
+
+import it.unibs.pajc.collision.CollisionEvent;
+import it.unibs.pajc.core.PhysicsConstants;
+import it.unibs.pajc.network.protocol.*;
+import it.unibs.pajc.network.replay.ReplayFormat;
+import it.unibs.pajc.network.replay.ReplayRecorder;
+import it.unibs.pajc.network.replay.RoomRecording;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// One match: its own world, inputs, interest management and metrics. Many rooms share the
+// server's transport and are ticked by the shared RoomScheduler, at most one tick at a time per room.
+public class GameRoom {
+
+    public enum State { WAITING, RUNNING, CLOSED }
+
+    private final int roomId;
+    private final String roomKey;
+    private final GameServer server;
+    private final ServerGameState gameState;
+    private final InterestManager interestManager;
+    private final InputCommandQueue inputQueue;
+    private final ServerMetrics metrics;
+    private final Map<Integer, ClientConnection> members;
+    private final TickScheduler tickScheduler;
+    private final double tickTime;
+    private final int capacity;
+
+    private final AtomicBoolean ticking;
+    private volatile State state;
+    private volatile long nextDeadline;
+    private final long createdNanos;
+
+    // Only set while the server records replays
+    private volatile RoomRecording recording;
+    // Players who left a running match. The tick takes them out of the world, so physics never loses a
+    // particle mid-step and a recorded despawn lands on the tick it took effect in.
+    private final Queue<Integer> departingPlayers;
+    private List<ReplayFormat.RecordedInput> tickInputs;
+
+    GameRoom(int roomId, String roomKey, GameServer server, int capacity, int simulationHz, int snapshotHz) {
+        this.roomId = roomId;
+        this.roomKey = roomKey;
+        this.server = server;
+        this.capacity = capacity;
+        this.gameState = new ServerGameState(simulationHz);
+        this.metrics = new ServerMetrics();
+        this.interestManager = new InterestManager(metrics);
+        this.inputQueue = new InputCommandQueue(PhysicsConstants.INPUT_QUEUE_CAPACITY);
+        this.members = new ConcurrentHashMap<>();
+        this.tickScheduler = new TickScheduler(simulationHz, snapshotHz, 0, metrics);
+        this.tickTime = 1.0 / simulationHz;
+        this.ticking = new AtomicBoolean();
+        this.state = State.WAITING;
+        this.createdNanos = System.nanoTime();
+        this.departingPlayers = new ConcurrentLinkedQueue<>();
+    }
+
+    // Seats are taken at admission, before the connection registers
+    synchronized boolean reserveSeat(int playerId, JoinMessage joinMsg) {
+        if (state != State.WAITING || gameState.getPlayerCount() >= capacity) {
+            return false;
+        }
+        gameState.addPlayer(playerId, joinMsg.getPlayerName(), joinMsg.getPreferredColor());
+        return true;
+    }
+
+    void addMember(ClientConnection connection) {
+        members.put(connection.getPlayerId(), connection);
+    }
+
+    // Returns true once the room has no players left
+    synchronized boolean removePlayer(int playerId) {
+        ClientConnection connection = members.remove(playerId);
+        if (state == State.RUNNING) {
+            departingPlayers.add(playerId);
+        } else {
+            gameState.removePlayer(playerId);
+        }
+        metrics.removeClient(playerId);
+        interestManager.removeClient(playerId);
+
+        // Sent in the lobby as well as during a match, as the single-room server always did
+        if (connection != null) {
+            broadcast(new PlayerLeftMessage(playerId, connection.getPlayerName()));
+        }
+        return getPlayerCount() == 0;
+    }
+
+    synchronized boolean start() {
+        if (state != State.WAITING || members.isEmpty()) {
+            return false;
+        }
+
+        gameState.startGame();
+
+        List<StateUpdateMessage.PlayerState> initialStates = gameState.getPlayerStates();
+        Set<Integer> everyone = new HashSet<>();
+        for (StateUpdateMessage.PlayerState state : initialStates) {
+            everyone.add(state.entityId);
+        }
+        for (Integer playerId : members.keySet()) {
+            interestManager.addClient(playerId, everyone);
+        }
+
+        broadcast(new GameStartMessage(
+            gameState.getEntityInfos(),
+            initialStates,
+            ServerGameState.WORLD_WIDTH,
+            ServerGameState.WORLD_HEIGHT,
+            tickScheduler.getSimulationHz(),
+            tickScheduler.getSnapshotHz()
+        ));
+
+        ReplayRecorder recorder = server.getReplayRecorder();
+        if (recorder != null) {
+            recording = recorder.openRoom(roomId, roomKey, tickScheduler.getSimulationHz(),
+                gameState.getServerTick(), gameState.getEntityInfos(),
+                new ReplayFormat.Keyframe(initialStates, gameState.getHeldDirections()));
+        }
+
+        nextDeadline = System.nanoTime();
+        state = State.RUNNING;
+        server.log("Room " + roomId + " started with " + members.size() + " players");
+        return true;
+    }
+
+    synchronized boolean closeIfEmpty() {
+        if (state == State.CLOSED || getPlayerCount() > 0) {
+            return false;
+        }
+        close();
+        return true;
+    }
+
+    void close() {
+        state = State.CLOSED;
+        RoomRecording current = recording;
+        if (current != null) {
+            current.close(gameState.getServerTick());
+        }
+    }
+
+    // Claimed by the scheduler before a tick is submitted, so a slow room never runs on two workers
+    boolean tryBeginTick() {
+        return ticking.compareAndSet(false, true);
+    }
+
+    void tick() {
+        try {
+            nextDeadline = tickScheduler.runDue(() -> state == State.RUNNING, this::simulate, this::broadcastState);
+        } catch (RuntimeException e) {
+            server.log("Room " + roomId + " tick failed: " + e);
+        } finally {
+            ticking.set(false);
+        }
+    }
+
+    private void simulate() {
+        List<Integer> departed = removeDepartedPlayers();
+        drainInputs();
+        gameState.update(tickTime);
+
+        RoomRecording current = recording;
+        if (current != null) {
+            record(current, gameState.getServerTick(), departed);
+        }
+    }
+
+    // Returns the entity ids of the players taken out
+    private List<Integer> removeDepartedPlayers() {
+        if (departingPlayers.isEmpty()) return List.of();
+
+        List<Integer> departed = new ArrayList<>();
+        Integer playerId;
+        while ((playerId = departingPlayers.poll()) != null) {
+            int entityId = gameState.getEntityId(playerId);
+            gameState.removePlayer(playerId);
+            if (entityId >= 0) {
+                departed.add(entityId);
+            }
+        }
+        return departed;
+    }
+
+    // Hands this tick's data to the recorder; encoding and IO happen on its own thread
+    private void record(RoomRecording current, long tick, List<Integer> departed) {
+        current.recordDespawns(tick, departed);
+        if (tickInputs != null) {
+            current.recordInputs(tick, tickInputs);
+            tickInputs = null;
+        }
+        current.recordHits(tick, gameState.getCompensatedHits());
+        if (current.isKeyframeDue(tick)) {
+            current.recordKeyframe(tick, new ReplayFormat.Keyframe(gameState.getPlayerStates(),
+                gameState.getHeldDirections()));
+        }
+    }
+
+    // Called from connection threads; inputs are applied by the room's tick
+    void handlePlayerInput(int playerId, InputMessage input) {
+        InputCommandQueue.InputCommand command = new InputCommandQueue.InputCommand(
+            playerId, input.getMovementDirection(), input.getInputSequence());
+
+        if (inputQueue.offer(command)) {
+            metrics.recordInputQueued();
+        } else {
+            metrics.recordInputRejected();
+        }
+    }
+
+    void handlePing(ClientConnection connection, PingMessage ping) {
+        metrics.recordClientRtt(connection.getPlayerId(), ping.getReportedRttNanos());
+        gameState.setPlayerLatency(connection.getPlayerId(), ping.getReportedRttNanos(),
+            ping.getInterpolationDelayNanos());
+        connection.sendMessage(new PongMessage(ping.getClientSendNanos(), System.nanoTime(),
+            gameState.getServerTick(), 1_000_000_000L / tickScheduler.getSimulationHz()));
+    }
+
+    private void drainInputs() {
+        metrics.recordInputQueueDepth(inputQueue.size());
+
+        InputCommandQueue.InputCommand command;
+        while ((command = inputQueue.poll()) != null) {
+            if (!gameState.applyInput(command.playerId(), command.direction(), command.inputSequence())) {
+                metrics.recordInputDiscarded();
+            } else if (recording != null) {
+                if (tickInputs == null) {
+                    tickInputs = new ArrayList<>();
+                }
+                tickInputs.add(new ReplayFormat.RecordedInput(command.playerId(), command.direction(),
+                    command.inputSequence()));
+            }
+        }
+    }
+
+    private void broadcastState() {
+        WorldSnapshot world = new WorldSnapshot(gameState.getServerTick(), gameState.getPlayerStates());
+        List<CollisionEvent> collisions = gameState.getPhysicsWorld().getRecentCollisions();
+        interestManager.index(world);
+
+        // Clients that see the whole world and share a baseline share one encoded frame, so in small
+        // arenas encoding cost follows the number of distinct baselines rather than receivers
+        Map<WorldSnapshot, OutboundState> sharedStates = new IdentityHashMap<>();
+
+        for (ClientConnection connection : members.values()) {
+            if (!connection.isConnected()) continue;
+
+            int playerId = connection.getPlayerId();
+
+            // Diff against what the client last applied; fall back to a keyframe once that is gone
+            WorldSnapshot baseline = interestManager.baselineFor(playerId, connection.getLastAckedTick());
+            InterestManager.View view = interestManager.viewFor(playerId, gameState.getEntityId(playerId),
+                world, baseline);
+            for (StateUpdateMessage.PlayerState spawned : view.spawned()) {
+                EntityInfo info = gameState.getEntityInfo(spawned.entityId);
+                if (info != null) {
+                    connection.sendMessage(new EntitySpawnMessage(info, spawned));
+                }
+            }
+            for (Integer despawned : view.despawned()) {
+                connection.sendMessage(new EntityDespawnMessage(despawned));
+            }
+
+            WorldSnapshot snapshot = view.snapshot();
+
+            if (view.sharesWorld()) {
+                OutboundState state = sharedStates.computeIfAbsent(baseline, b ->
+                    encodeState(b, snapshot, collisions));
+                server.sendState(connection, state);
+            } else {
+                OutboundState state = encodeState(baseline, snapshot, visibleCollisions(collisions, snapshot));
+                server.sendState(connection, state);
+                state.release();
+            }
+        }
+
+        for (OutboundState state : sharedStates.values()) {
+            state.release();
+        }
+    }
+
+    private OutboundState encodeState(WorldSnapshot baseline, WorldSnapshot snapshot,
+                                      List<CollisionEvent> collisions) {
+        return new OutboundState(server, new StateDeltaMessage(
+            snapshot.getTick(),
+            baseline != null ? baseline.getTick() : StateDeltaMessage.KEYFRAME,
+            SnapshotCodec.encode(baseline, snapshot),
+            collisions
+        ));
+    }
+
+    private static List<CollisionEvent> visibleCollisions(List<CollisionEvent> collisions, WorldSnapshot snapshot) {
+        if (collisions.isEmpty()) return collisions;
+
+        return collisions.stream()
+            .filter(c -> snapshot.get(c.entityA()) != null || snapshot.get(c.entityB()) != null)
+            .toList();
+    }
+
+    void broadcast(Message message) {
+        SharedFrame frame = server.encodeFrame(message);
+        for (ClientConnection connection : members.values()) {
+            if (connection.isConnected()) {
+                connection.sendFrame(frame);
+            }
+        }
+        frame.release();
+    }
+
+    public int getRoomId() {
+        return roomId;
+    }
+
+    // Null for rooms filled by the matchmaker rather than joined by key
+    public String getRoomKey() {
+        return roomKey;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Players who have left but whose particle the next tick has yet to remove don't count
+    public int getPlayerCount() {
+        return gameState.getPlayerCount() - departingPlayers.size();
+    }
+
+    boolean isFullyRegistered() {
+        return members.size() == gameState.getPlayerCount();
+    }
+
+    public int getFreeSeats() {
+        return capacity - getPlayerCount();
+    }
+
+    long getNextDeadline() {
+        return nextDeadline;
+    }
+
+    long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    public ServerGameState getGameState() {
+        return gameState;
+    }
+
+    public InterestManager getInterestManager() {
+        return interestManager;
+    }
+
+    // Tick time, input and snapshot figures for this room alone
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        String name = roomKey != null ? roomId + " '" + roomKey + "'" : String.valueOf(roomId);
+        return "Room " + name + " [" + state + ", " + getPlayerCount() + "/" + capacity + "] " + metrics;
+    }
+}
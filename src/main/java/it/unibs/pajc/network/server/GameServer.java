@@ -2,212 +2,354 @@ package it.unibs.pajc.network.server;
 
 import it.unibs.pajc.core.PhysicsConstants;
 import it.unibs.pajc.network.protocol.*;
+import it.unibs.pajc.network.replay.ReplayRecorder;
 
-import java.io.*;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.net.SocketException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 public class GameServer {
 
-    private ServerSocket serverSocket;
-    private final Map<Integer, ClientHandler> clients;
-    private final ServerGameState gameState;
-    private final ExecutorService executor;
+    public static final ServerTransportType DEFAULT_TRANSPORT = ServerTransportType.BLOCKING;
+
+    private final Map<Integer, ClientConnection> clients;
+    private final Map<Integer, GameRoom> roomsByPlayer;
+    private final Matchmaker matchmaker;
+    private final ServerTransportType transportType;
+    private ServerTransport transport;
+    private final SecureRandom tokenGenerator;
+    private final AtomicInteger nextPlayerId;
+    private RoomScheduler roomScheduler;
+    private UdpServerChannel udpChannel;
+    private NetworkConditioner networkConditioner;
 
     private volatile boolean running;
-    private Thread acceptThread;
-    private Thread gameLoopThread;
+    private int simulationHz;
+    private int snapshotHz;
+    private int roomWorkers;
+    private Consumer<GameRoom> roomInitializer;
+    private Path replayDirectory;
+    private ReplayRecorder replayRecorder;
 
     private Consumer<String> statusCallback;
 
     public GameServer() {
+        this(DEFAULT_TRANSPORT);
+    }
+
+    // The transport is created by start(), so it never sees a half-constructed server
+    public GameServer(ServerTransportType transportType) {
         this.clients = new ConcurrentHashMap<>();
-        this.gameState = new ServerGameState();
-        this.executor = Executors.newCachedThreadPool();
+        this.roomsByPlayer = new ConcurrentHashMap<>();
+        this.transportType = transportType;
+        this.tokenGenerator = new SecureRandom();
+        this.nextPlayerId = new AtomicInteger(1);
+        this.networkConditioner = NetworkConditioner.NONE;
+        this.simulationHz = PhysicsConstants.TICK_RATE;
+        this.snapshotHz = PhysicsConstants.SNAPSHOT_RATE;
+        this.roomWorkers = PhysicsConstants.ROOM_WORKER_THREADS;
+        // A single room by default, started by the host: the classic one-match server
+        this.matchmaker = new Matchmaker(PhysicsConstants.MAX_PLAYERS, 1);
         this.running = false;
     }
 
     public void start(int port) throws IOException {
-        serverSocket = new ServerSocket(port);
+        matchmaker.setRoomFactory(this::createRoom);
+        transport = switch (transportType) {
+            case BLOCKING -> new BlockingServerTransport(this, Executors.newCachedThreadPool());
+            case VIRTUAL_THREADS -> new BlockingServerTransport(this, Executors.newVirtualThreadPerTaskExecutor());
+            case NIO -> new NioServerTransport(this);
+        };
+        transport.start(port);
         running = true;
 
+        if (replayDirectory != null) {
+            replayRecorder = new ReplayRecorder(replayDirectory, PhysicsConstants.REPLAY_SEGMENT_BYTES,
+                PhysicsConstants.REPLAY_KEYFRAME_INTERVAL_MS, PhysicsConstants.REPLAY_MAX_QUEUED_RECORDS, this::log);
+            replayRecorder.start();
+        }
+
+        roomScheduler = new RoomScheduler(this, matchmaker, roomWorkers);
+        roomScheduler.start();
+
+        udpChannel = new UdpServerChannel(this, networkConditioner);
+        try {
+            udpChannel.open(port);
+        } catch (IOException e) {
+            log("UDP unavailable, snapshots stay on TCP: " + e.getMessage());
+            udpChannel = null;
+        }
+
         log("Server started on port " + port);
+    }
 
-        acceptThread = new Thread(this::acceptClients, "Accept-Thread");
-        acceptThread.start();
+    // Applies to datagrams sent after the next start(); useful over loopback in tests
+    public void setNetworkConditioner(NetworkConditioner conditioner) {
+        this.networkConditioner = conditioner != null ? conditioner : NetworkConditioner.NONE;
     }
 
-    private void acceptClients() {
-        while (running) {
-            try {
-                Socket clientSocket = serverSocket.accept();
-                handleNewConnection(clientSocket);
-            } catch (SocketException e) {
-                if (running) {
-                    log("Socket exception: " + e.getMessage());
-                }
-            } catch (IOException e) {
-                if (running) {
-                    log("Error accepting client: " + e.getMessage());
-                }
-            }
+    private GameRoom createRoom(int roomId, String roomKey) {
+        GameRoom room = new GameRoom(roomId, roomKey, this, matchmaker.getPlayersPerRoom(), simulationHz, snapshotHz);
+        if (roomInitializer != null) {
+            roomInitializer.accept(room);
         }
+        return room;
     }
 
-    private void handleNewConnection(Socket socket) {
-        try {
-            ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-            out.flush();
-            ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+    synchronized JoinResponseMessage admitPlayer(JoinMessage joinMsg) {
+        // Only taken once seated, so rejected joins don't use up ids
+        int playerId = nextPlayerId.get();
+        GameRoom room = matchmaker.seat(playerId, joinMsg);
+        if (room == null) {
+            return JoinResponseMessage.reject(matchmaker.rejectionReason());
+        }
+        nextPlayerId.incrementAndGet();
+        roomsByPlayer.put(playerId, room);
+
+        long udpToken = tokenGenerator.nextLong();
+        if (udpChannel != null) {
+            udpChannel.registerPlayer(playerId, udpToken);
+        }
+        return JoinResponseMessage.accept(playerId, room.getPlayerCount() - 1, udpToken);
+    }
 
-            Message message = (Message) in.readObject();
+    void registerClient(ClientConnection connection) {
+        clients.put(connection.getPlayerId(), connection);
+        GameRoom room = roomsByPlayer.get(connection.getPlayerId());
+        if (room != null) {
+            room.addMember(connection);
+            wakeRoomScheduler();
+        }
 
-            if (message.getType() == MessageType.JOIN_REQUEST) {
-                JoinMessage joinMsg = (JoinMessage) message;
+        log("Player " + connection.getPlayerName() + " joined (ID: " + connection.getPlayerId() + ")");
+        broadcastPlayerCount();
+    }
 
-                if (clients.size() >= PhysicsConstants.MAX_PLAYERS) {
-                    out.writeObject(JoinResponseMessage.reject("Server is full"));
-                    out.flush();
-                    socket.close();
-                    return;
-                }
+    void handleMessage(ClientConnection connection, Message message) {
+        GameRoom room = roomsByPlayer.get(connection.getPlayerId());
+        if (room == null) return;
 
-                if (gameState.isGameStarted()) {
-                    out.writeObject(JoinResponseMessage.reject("Game already in progress"));
-                    out.flush();
-                    socket.close();
-                    return;
+        switch (message.getType()) {
+            case PLAYER_INPUT -> room.handlePlayerInput(connection.getPlayerId(), (InputMessage) message);
+            case PLAYER_INPUT_BATCH -> {
+                for (InputMessage input : ((InputBatchMessage) message).getInputs()) {
+                    room.handlePlayerInput(connection.getPlayerId(), input);
                 }
+            }
+            case STATE_ACK -> connection.acknowledgeTick(((StateAckMessage) message).getAckedTick());
+            case PING -> room.handlePing(connection, (PingMessage) message);
+            default -> log("Unknown message type from client " + connection.getPlayerId() + ": " + message.getType());
+        }
+    }
 
-                int playerId = gameState.addPlayer(joinMsg.getPlayerName(), joinMsg.getPreferredColor());
+    // Players per room. Interest management keeps per-client bandwidth bounded, so arenas can go
+    // well past MAX_PLAYERS. Applies to rooms opened afterwards.
+    public void setMaxPlayers(int maxPlayers) {
+        matchmaker.setPlayersPerRoom(maxPlayers);
+    }
 
-                out.writeObject(JoinResponseMessage.accept(playerId, clients.size()));
-                out.flush();
+    // Runs for every room as it opens, before anyone is seated; e.g. to tune its interest manager
+    public void setRoomInitializer(Consumer<GameRoom> initializer) {
+        this.roomInitializer = initializer;
+    }
 
-                ClientHandler handler = new ClientHandler(socket, this, playerId, joinMsg.getPlayerName(), in, out);
-                clients.put(playerId, handler);
+    // Records every match that starts after the next start() into its own directory below this one;
+    // null turns recording off
+    public void setReplayDirectory(Path directory) {
+        this.replayDirectory = directory;
+    }
 
-                executor.submit(handler);
+    public ReplayRecorder getReplayRecorder() {
+        return replayRecorder;
+    }
 
-                log("Player " + joinMsg.getPlayerName() + " joined (ID: " + playerId + ")");
-                broadcastPlayerCount();
-            }
-        } catch (IOException | ClassNotFoundException e) {
-            log("Error handling new connection: " + e.getMessage());
-            try {
-                socket.close();
-            } catch (IOException ignored) {}
+    // Size of the pool that ticks all rooms; takes effect on the next start()
+    public void setRoomWorkers(int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Worker count must be positive");
         }
+        this.roomWorkers = workers;
     }
 
-    public void startGame() {
-        if (clients.isEmpty()) {
-            log("Cannot start game with no players");
-            return;
-        }
+    public Matchmaker getMatchmaker() {
+        return matchmaker;
+    }
 
-        gameState.startGame();
+    // Stop opening rooms so the process can be restarted once its matches end; the gateway sees
+    // this in its next health check and routes new rooms elsewhere
+    public void setDraining(boolean draining) {
+        matchmaker.setDraining(draining);
+        log(draining ? "Draining: no new rooms" : "Accepting new rooms");
+    }
 
-        GameStartMessage startMsg = new GameStartMessage(
-            gameState.getPlayerStates(),
-            ServerGameState.WORLD_WIDTH,
-            ServerGameState.WORLD_HEIGHT
-        );
-        broadcast(startMsg);
+    public boolean isDraining() {
+        return matchmaker.isDraining();
+    }
 
-        gameLoopThread = new Thread(this::gameLoop, "Game-Loop");
-        gameLoopThread.start();
+    HealthStatusMessage healthStatus() {
+        return new HealthStatusMessage(clients.size(), matchmaker.getRooms().size(), matchmaker.getMaxRooms(),
+            matchmaker.isDraining());
+    }
 
-        log("Game started with " + clients.size() + " players");
+    public void setTickRates(int simulationHz, int snapshotHz) {
+        if (simulationHz <= 0 || snapshotHz <= 0) {
+            throw new IllegalArgumentException("Tick rates must be positive");
+        }
+        if (!matchmaker.getRooms().isEmpty()) {
+            throw new IllegalStateException("Tick rates must be set before any room opens");
+        }
+        this.simulationHz = simulationHz;
+        this.snapshotHz = snapshotHz;
     }
 
-    private void gameLoop() {
-        long lastTime = System.nanoTime();
-        double accumulator = 0;
-        double tickTime = 1.0 / PhysicsConstants.TICK_RATE;
+    void handleDatagramMessage(int playerId, Message message) {
+        ClientConnection connection = clients.get(playerId);
+        if (connection == null) return;
 
-        while (running && gameState.isGameStarted()) {
-            long currentTime = System.nanoTime();
-            double frameTime = (currentTime - lastTime) / 1_000_000_000.0;
-            lastTime = currentTime;
-            accumulator += frameTime;
+        // Only unreliable traffic is accepted over UDP
+        switch (message.getType()) {
+            case PLAYER_INPUT, PLAYER_INPUT_BATCH, STATE_ACK -> handleMessage(connection, message);
+            default -> {}
+        }
+    }
 
-            while (accumulator >= tickTime) {
-                gameState.update(tickTime);
-                accumulator -= tickTime;
+    // Starts every waiting room that has players; with a single room this is the host's start button
+    public void startGame() {
+        int started = 0;
+        for (GameRoom room : matchmaker.waitingRooms()) {
+            if (startRoom(room)) {
+                started++;
             }
+        }
+        if (started == 0) {
+            log("Cannot start game with no players");
+        }
+    }
 
-            broadcastState();
-
-            try {
-                Thread.sleep(Math.max(1, (long) ((tickTime - frameTime) * 1000)));
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
-            }
+    boolean startRoom(GameRoom room) {
+        if (!room.start()) {
+            return false;
         }
+        roomScheduler.add(room);
+        return true;
     }
 
+    // Called from connection threads; inputs are applied by the room's next tick
     public void handlePlayerInput(int playerId, InputMessage input) {
-        gameState.applyInput(playerId, input.getMovementDirection(), input.getInputSequence());
+        GameRoom room = roomsByPlayer.get(playerId);
+        if (room != null) {
+            room.handlePlayerInput(playerId, input);
+        }
     }
 
     public void removePlayer(int playerId) {
-        ClientHandler handler = clients.remove(playerId);
-        if (handler != null) {
-            String playerName = handler.getPlayerName();
-            gameState.removePlayer(playerId);
+        ClientConnection connection = clients.remove(playerId);
+        GameRoom room = roomsByPlayer.remove(playerId);
+        if (udpChannel != null) {
+            udpChannel.removePlayer(playerId);
+        }
+
+        if (room != null) {
+            // Empty rooms are closed so their slot goes back to the matchmaker. It checks again under
+            // the lock seat() takes, since a join may have taken the seat meanwhile.
+            if (room.removePlayer(playerId) && matchmaker.removeIfEmpty(room)) {
+                roomClosed(room);
+            } else {
+                wakeRoomScheduler();
+            }
+        }
 
-            broadcast(new PlayerLeftMessage(playerId, playerName));
-            log("Player " + playerName + " left");
+        if (connection != null) {
+            log("Player " + connection.getPlayerName() + " left");
             broadcastPlayerCount();
         }
     }
 
-    private void broadcastState() {
-        StateUpdateMessage update = new StateUpdateMessage(
-            gameState.getServerTick(),
-            gameState.getPlayerStates(),
-            gameState.getPhysicsWorld().getRecentCollisions()
-        );
-        broadcast(update);
+    // Seating changes can let a waiting room auto-start
+    private void wakeRoomScheduler() {
+        RoomScheduler scheduler = roomScheduler;
+        if (scheduler != null) {
+            scheduler.wake();
+        }
+    }
+
+    private void closeRoom(GameRoom room) {
+        if (room.getState() == GameRoom.State.CLOSED) return;
+
+        room.close();
+        matchmaker.remove(room);
+        roomClosed(room);
+    }
+
+    private void roomClosed(GameRoom room) {
+        RoomScheduler scheduler = roomScheduler;
+        if (scheduler != null) {
+            scheduler.remove(room);
+        }
+        log("Room " + room.getRoomId() + " closed: " + room.getMetrics());
+    }
+
+    SharedFrame encodeFrame(Message message) {
+        return transport.encodeFrame(message);
     }
 
-    private void broadcast(Message message) {
-        for (ClientHandler handler : clients.values()) {
-            if (handler.isConnected()) {
-                handler.sendMessage(message);
+    void sendState(ClientConnection connection, OutboundState state) {
+        int playerId = connection.getPlayerId();
+        long tick = state.getTick();
+
+        if (udpChannel != null && udpChannel.isBound(playerId)) {
+            // Acks stopped arriving over UDP: fall back to the reliable stream
+            if (tick - connection.getLastAckedTick() > PhysicsConstants.UDP_FALLBACK_TICKS) {
+                udpChannel.unbind(playerId);
+                log("Player " + playerId + " fell back to TCP snapshots");
+            } else {
+                udpChannel.sendState(playerId, tick, state.datagram());
+                return;
             }
         }
+
+        connection.sendStateFrame(state.frame());
     }
 
     private void broadcastPlayerCount() {
-        log("Players: " + clients.size() + "/" + PhysicsConstants.MAX_PLAYERS);
+        List<GameRoom> rooms = matchmaker.getRooms();
+        log("Players: " + clients.size() + " in " + rooms.size() + " room(s) of " + matchmaker.getPlayersPerRoom());
     }
 
     public void stop() {
         running = false;
 
-        for (ClientHandler handler : clients.values()) {
-            handler.disconnect();
+        if (roomScheduler != null) {
+            roomScheduler.stop();
+            roomScheduler = null;
+        }
+        for (GameRoom room : matchmaker.getRooms()) {
+            closeRoom(room);
+        }
+        if (replayRecorder != null) {
+            replayRecorder.stop();
+            replayRecorder = null;
         }
-        clients.clear();
 
-        try {
-            if (serverSocket != null && !serverSocket.isClosed()) {
-                serverSocket.close();
-            }
-        } catch (IOException e) {
-            log("Error closing server socket: " + e.getMessage());
+        for (ClientConnection connection : clients.values()) {
+            connection.disconnect();
         }
+        clients.clear();
+        roomsByPlayer.clear();
 
-        executor.shutdownNow();
+        if (transport != null) {
+            transport.stop();
+        }
+        if (udpChannel != null) {
+            udpChannel.close();
+            udpChannel = null;
+        }
 
         log("Server stopped");
     }
@@ -216,7 +358,7 @@ public class GameServer {
         this.statusCallback = callback;
     }
 
-    private void log(String message) {
+    void log(String message) {
         System.out.println("[Server] " + message);
         if (statusCallback != null) {
             statusCallback.accept(message);
@@ -231,7 +373,15 @@ public class GameServer {
         return running;
     }
 
-    public ServerGameState getGameState() {
-        return gameState;
+    public List<GameRoom> getRooms() {
+        return matchmaker.getRooms();
+    }
+
+    public GameRoom getRoomOf(int playerId) {
+        return roomsByPlayer.get(playerId);
+    }
+
+    public RoomScheduler getRoomScheduler() {
+        return roomScheduler;
     }
 }
@@ -0,0 +1,76 @@
+package it.unibs.pajc.network.server;
+
+import it.unibs.pajc.core.Vector2D;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Bounded multi-producer single-consumer ring: client threads offer, the game loop drains
+public class InputCommandQueue {
+
+    public record InputCommand(int playerId, Vector2D direction, long inputSequence) {}
+
+    private final InputCommand[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong tail;
+    private final AtomicLong head;
+
+    public InputCommandQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.buffer = new InputCommand[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.tail = new AtomicLong();
+        this.head = new AtomicLong();
+
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public boolean offer(InputCommand command) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long diff = sequences.get(index) - position;
+
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer[index] = command;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    // Consumer side only
+    public InputCommand poll() {
+        long position = head.get();
+        int index = (int) (position & mask);
+
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+
+        InputCommand command = buffer[index];
+        buffer[index] = null;
+        sequences.set(index, position + buffer.length);
+        head.lazySet(position + 1);
+        return command;
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
@@ -0,0 +1,211 @@
+package it.unibs.pajc.network.server;
+
+import it.unibs.pajc.core.PhysicsConstants;
+import it.unibs.pajc.network.protocol.SnapshotCodec;
+import it.unibs.pajc.network.protocol.SnapshotHistory;
+import it.unibs.pajc.network.protocol.StateUpdateMessage;
+import it.unibs.pajc.network.protocol.WorldSnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Decides which entities each client hears about, and which of them fit in this snapshot.
+// Only used from the game loop, apart from adding and removing clients.
+public class InterestManager {
+
+    // Bits every delta spends regardless of content: entity and removal counts
+    private static final int SNAPSHOT_OVERHEAD_BITS = 16;
+
+    private final SpatialGrid grid;
+    private final Map<Integer, ClientView> views;
+    private final ServerMetrics metrics;
+
+    private volatile double viewRadius;
+    private volatile double nearRadius;
+    private volatile int byteBudget;
+
+    public InterestManager(ServerMetrics metrics) {
+        this.grid = new SpatialGrid(PhysicsConstants.WORLD_WIDTH, PhysicsConstants.WORLD_HEIGHT,
+            PhysicsConstants.AOI_CELL_SIZE);
+        this.views = new ConcurrentHashMap<>();
+        this.metrics = metrics;
+        this.viewRadius = PhysicsConstants.AOI_VIEW_RADIUS;
+        this.nearRadius = PhysicsConstants.AOI_NEAR_RADIUS;
+        this.byteBudget = PhysicsConstants.SNAPSHOT_BYTE_BUDGET;
+    }
+
+    public void setViewRadius(double viewRadius, double nearRadius) {
+        if (nearRadius > viewRadius) {
+            throw new IllegalArgumentException("Near radius cannot exceed the view radius");
+        }
+        this.viewRadius = viewRadius;
+        this.nearRadius = nearRadius;
+    }
+
+    // Upper bound on the entity payload of one snapshot for one client
+    public void setByteBudget(int bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Byte budget must be positive");
+        }
+        this.byteBudget = bytes;
+    }
+
+    // The client starts out knowing about everything it was told in GameStartMessage
+    public void addClient(int playerId, Set<Integer> initiallyKnown) {
+        views.put(playerId, new ClientView(initiallyKnown));
+    }
+
+    public void removeClient(int playerId) {
+        views.remove(playerId);
+    }
+
+    public void index(WorldSnapshot world) {
+        grid.rebuild(world.getStates().values());
+    }
+
+    // Must follow index(world) for the same snapshot. baseline is what the delta will be encoded
+    // against, so the budget is spent on the bytes that will actually go out.
+    public View viewFor(int playerId, int selfEntityId, WorldSnapshot world, WorldSnapshot baseline) {
+        ClientView view = views.get(playerId);
+        StateUpdateMessage.PlayerState self = world.get(selfEntityId);
+        if (view == null || self == null) {
+            return new View(world, true, List.of(), List.of());
+        }
+
+        List<StateUpdateMessage.PlayerState> inView = new ArrayList<>();
+        grid.query(self.getPosition(), viewRadius, inView::add);
+
+        Map<Integer, StateUpdateMessage.PlayerState> chosen = new HashMap<>();
+        List<StateUpdateMessage.PlayerState> candidates = new ArrayList<>();
+        int budgetBits = byteBudget * 8 - SNAPSHOT_OVERHEAD_BITS;
+        int usedBits = 0;
+
+        for (StateUpdateMessage.PlayerState state : inView) {
+            StateUpdateMessage.PlayerState acked = baseline != null ? baseline.get(state.entityId) : null;
+
+            if (state.entityId == selfEntityId || !view.known.contains(state.entityId)) {
+                // Our own particle and entities the client has not been told about always go out
+                chosen.put(state.entityId, state);
+                usedBits += SnapshotCodec.encodedBits(acked, state);
+            } else {
+                // Until picked, an entity is left out of the snapshot rather than repeated with an old
+                // state under the new tick; the client keeps interpolating its last real samples.
+                // Leaving out one the baseline holds costs its entry in the removal list.
+                if (acked != null) {
+                    usedBits += SnapshotCodec.removalBits(state.entityId);
+                }
+                view.accumulate(state, self, nearRadius);
+                candidates.add(state);
+            }
+        }
+
+        // Highest accumulated priority first, until the budget runs out
+        candidates.sort((a, b) -> Double.compare(view.priorityOf(b.entityId), view.priorityOf(a.entityId)));
+        boolean limited = false;
+        for (StateUpdateMessage.PlayerState state : candidates) {
+            StateUpdateMessage.PlayerState acked = baseline != null ? baseline.get(state.entityId) : null;
+            int extra = SnapshotCodec.encodedBits(acked, state)
+                - (acked != null ? SnapshotCodec.removalBits(state.entityId) : 0);
+            if (usedBits + extra > budgetBits) {
+                limited = true;
+                continue;
+            }
+            usedBits += extra;
+            chosen.put(state.entityId, state);
+            view.markSent(state.entityId, world.getTick());
+        }
+        view.markSent(selfEntityId, world.getTick());
+
+        // Membership follows the view radius and is only ever changed by spawn and despawn messages;
+        // snapshots carry whatever subset of the members was refreshed this tick
+        Set<Integer> visible = new HashSet<>();
+        List<StateUpdateMessage.PlayerState> spawned = new ArrayList<>();
+        for (StateUpdateMessage.PlayerState state : inView) {
+            visible.add(state.entityId);
+            if (!view.known.contains(state.entityId)) {
+                spawned.add(state);
+                view.markSent(state.entityId, world.getTick());
+            }
+        }
+
+        List<Integer> despawned = new ArrayList<>();
+        for (Integer id : view.known) {
+            if (!visible.contains(id)) {
+                despawned.add(id);
+                view.forget(id);
+            }
+        }
+        view.known = visible;
+
+        recordStaleness(view, world.getTick(), limited);
+
+        // Seeing everything at full rate means the client can share the world snapshot and its frames
+        boolean full = !limited && chosen.size() == world.getStates().size();
+        WorldSnapshot snapshot = full ? world : new WorldSnapshot(world.getTick(), chosen.values());
+        view.history.add(snapshot);
+
+        return new View(snapshot, full, spawned, despawned);
+    }
+
+    private void recordStaleness(ClientView view, long tick, boolean limited) {
+        long totalTicks = 0;
+        long maxTicks = 0;
+        for (Integer id : view.known) {
+            long age = tick - view.lastSentTick.getOrDefault(id, tick);
+            totalTicks += age;
+            maxTicks = Math.max(maxTicks, age);
+        }
+        metrics.recordEntityStaleness(totalTicks, view.known.size(), maxTicks, limited);
+    }
+
+    public WorldSnapshot baselineFor(int playerId, long ackedTick) {
+        ClientView view = views.get(playerId);
+        return view != null ? view.history.get(ackedTick) : null;
+    }
+
+    public record View(WorldSnapshot snapshot, boolean sharesWorld,
+                       List<StateUpdateMessage.PlayerState> spawned, List<Integer> despawned) {}
+
+    private static class ClientView {
+        private final SnapshotHistory history;
+        private final Map<Integer, Double> priority;
+        private final Map<Integer, Long> lastSentTick;
+        private Set<Integer> known;
+
+        private ClientView(Set<Integer> initiallyKnown) {
+            this.history = new SnapshotHistory(PhysicsConstants.SNAPSHOT_HISTORY_SIZE);
+            this.priority = new HashMap<>();
+            this.lastSentTick = new HashMap<>();
+            this.known = new HashSet<>(initiallyKnown);
+        }
+
+        // Close and fast entities gain priority quickest; everything gains some every snapshot,
+        // so even distant idle entities are eventually refreshed
+        private void accumulate(StateUpdateMessage.PlayerState state, StateUpdateMessage.PlayerState self,
+                                double nearRadius) {
+            double distance = Math.hypot(state.posX - self.posX, state.posY - self.posY);
+            double proximity = nearRadius / Math.max(distance, nearRadius);
+            double speed = Math.hypot(state.velX, state.velY) / PhysicsConstants.MAX_PLAYER_SPEED;
+            priority.merge(state.entityId, proximity * (1 + speed), Double::sum);
+        }
+
+        private double priorityOf(int entityId) {
+            return priority.getOrDefault(entityId, 0.0);
+        }
+
+        private void markSent(int entityId, long tick) {
+            priority.put(entityId, 0.0);
+            lastSentTick.put(entityId, tick);
+        }
+
+        private void forget(int entityId) {
+            priority.remove(entityId);
+            lastSentTick.remove(entityId);
+        }
+    }
+}
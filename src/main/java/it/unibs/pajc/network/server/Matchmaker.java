@@ -0,0 +1,178 @@
+package it.unibs.pajc.network.server;
+
+import it.unibs.pajc.network.protocol.JoinMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// Lobby side of a multi-room server: seats joining players in a waiting room, opening new rooms up
+// to maxRooms, and decides when a waiting room starts on its own
+public class Matchmaker {
+
+    private final List<GameRoom> rooms;
+    private volatile RoomFactory roomFactory;
+    private int nextRoomId = 1;
+
+    private volatile int playersPerRoom;
+    private volatile int maxRooms;
+    private volatile int autoStartMinPlayers;
+    private volatile long autoStartDelayNanos;
+    private volatile boolean draining;
+
+    // Capacity of a new room is read from playersPerRoom at the time it opens
+    public interface RoomFactory {
+        GameRoom create(int roomId, String roomKey);
+    }
+
+    // No room opens until a factory is set; the server sets itself as one when it starts
+    public Matchmaker(int playersPerRoom, int maxRooms) {
+        this.rooms = new ArrayList<>();
+        this.playersPerRoom = playersPerRoom;
+        this.maxRooms = maxRooms;
+        this.autoStartMinPlayers = 0;
+        this.autoStartDelayNanos = -1;
+    }
+
+    public void setRoomFactory(RoomFactory roomFactory) {
+        this.roomFactory = roomFactory;
+    }
+
+    public void setPlayersPerRoom(int playersPerRoom) {
+        if (playersPerRoom <= 0) {
+            throw new IllegalArgumentException("Players per room must be positive");
+        }
+        this.playersPerRoom = playersPerRoom;
+    }
+
+    public void setMaxRooms(int maxRooms) {
+        if (maxRooms <= 0) {
+            throw new IllegalArgumentException("Max rooms must be positive");
+        }
+        this.maxRooms = maxRooms;
+    }
+
+    // Without auto-start, waiting rooms start only through GameServer.startGame().
+    // With it, a room starts as soon as it is full, or once it has minPlayers and has waited delayMillis.
+    public void setAutoStart(int minPlayers, long delayMillis) {
+        if (minPlayers <= 0 || delayMillis < 0) {
+            throw new IllegalArgumentException("Auto-start needs a positive player count and a non-negative delay");
+        }
+        this.autoStartMinPlayers = minPlayers;
+        this.autoStartDelayNanos = delayMillis * 1_000_000L;
+    }
+
+    public void disableAutoStart() {
+        this.autoStartDelayNanos = -1;
+    }
+
+    public boolean isAutoStart() {
+        return autoStartDelayNanos >= 0;
+    }
+
+    // While draining no new rooms open; waiting rooms can still fill so matches already forming
+    // are not split up. Used for rolling restarts behind the gateway.
+    public void setDraining(boolean draining) {
+        this.draining = draining;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    // Keyed joins go to the waiting room with that key. Unkeyed joins fill the fullest unkeyed waiting
+    // room first so matches start sooner. A new room opens if none has a seat.
+    synchronized GameRoom seat(int playerId, JoinMessage joinMsg) {
+        String key = joinMsg.getRoomKey();
+        GameRoom best = null;
+        for (GameRoom room : rooms) {
+            if (room.getState() == GameRoom.State.WAITING && room.getFreeSeats() > 0
+                    && Objects.equals(room.getRoomKey(), key)
+                    && (best == null || room.getFreeSeats() < best.getFreeSeats())) {
+                best = room;
+            }
+        }
+
+        if (best != null && best.reserveSeat(playerId, joinMsg)) {
+            return best;
+        }
+
+        RoomFactory factory = roomFactory;
+        if (factory == null || draining || rooms.size() >= maxRooms) {
+            return null;
+        }
+
+        GameRoom room = factory.create(nextRoomId++, key);
+        rooms.add(room);
+        return room.reserveSeat(playerId, joinMsg) ? room : null;
+    }
+
+    // Why seat() found nothing, in the words the single-room server always used
+    synchronized String rejectionReason() {
+        if (draining) {
+            return "Server is draining";
+        }
+        for (GameRoom room : rooms) {
+            if (room.getState() == GameRoom.State.WAITING) {
+                return "Server is full";
+            }
+        }
+        return "Game already in progress";
+    }
+
+    synchronized void remove(GameRoom room) {
+        rooms.remove(room);
+    }
+
+    // Closes and drops the room if nobody holds a seat in it. Holding the seat() lock, no join can be
+    // seated between the check and the close.
+    synchronized boolean removeIfEmpty(GameRoom room) {
+        if (!room.closeIfEmpty()) {
+            return false;
+        }
+        rooms.remove(room);
+        return true;
+    }
+
+    synchronized List<GameRoom> waitingRooms() {
+        List<GameRoom> waiting = new ArrayList<>();
+        for (GameRoom room : rooms) {
+            if (room.getState() == GameRoom.State.WAITING) {
+                waiting.add(room);
+            }
+        }
+        return waiting;
+    }
+
+    boolean shouldAutoStart(GameRoom room, long nowNanos) {
+        long delay = autoStartDelayNanos;
+        if (delay < 0 || room.getState() != GameRoom.State.WAITING) {
+            return false;
+        }
+        // Seated players whose connection has not registered yet would miss the start message
+        if (!room.isFullyRegistered()) {
+            return false;
+        }
+        if (room.getFreeSeats() == 0) {
+            return true;
+        }
+        return room.getPlayerCount() >= autoStartMinPlayers && nowNanos - room.getCreatedNanos() >= delay;
+    }
+
+    // When a waiting room's delay runs out; whether it then starts still depends on who has joined
+    long autoStartDeadline(GameRoom room) {
+        return room.getCreatedNanos() + autoStartDelayNanos;
+    }
+
+    public synchronized List<GameRoom> getRooms() {
+        return List.copyOf(rooms);
+    }
+
+    public int getPlayersPerRoom() {
+        return playersPerRoom;
+    }
+
+    public int getMaxRooms() {
+        return maxRooms;
+    }
+}
@@ -0,0 +1,335 @@
+package it.unibs.pajc.network.server;
+
+import it.unibs.pajc.network.protocol.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+class NioConnection implements ClientConnection {
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_GATHER = 16;
+
+    private final GameServer server;
+    private final NioServerTransport transport;
+    private final NioServerTransport.IoWorker worker;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+
+    // Only touched by the worker thread
+    private final ByteBuffer readBuffer;
+    private ByteBuffer oversizedFrame;
+    private final ArrayDeque<PendingWrite> inFlight;
+    private final ByteBuffer[] gather;
+
+    // Reliable frames queue up; state frames only keep the newest one
+    private final Queue<QueuedFrame> writeQueue;
+    private final AtomicInteger queuedFrames;
+    private final AtomicReference<QueuedFrame> pendingState;
+    private final AtomicLong sendSequence;
+    private final AtomicLong droppedStates;
+    private final AtomicBoolean writeScheduled;
+    private final AtomicBoolean closed;
+    // Raised by the selector thread (TCP acks) and the UDP receiver alike, never lowered
+    private final AtomicLong lastAckedTick;
+
+    private volatile boolean joined;
+    private boolean closeAfterFlush;
+    private int playerId;
+    private String playerName;
+
+    NioConnection(GameServer server, NioServerTransport transport, NioServerTransport.IoWorker worker,
+                  SocketChannel channel, SelectionKey key) {
+        this.server = server;
+        this.transport = transport;
+        this.worker = worker;
+        this.channel = channel;
+        this.key = key;
+        this.readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        this.inFlight = new ArrayDeque<>();
+        this.gather = new ByteBuffer[MAX_GATHER];
+        this.writeQueue = new ConcurrentLinkedQueue<>();
+        this.queuedFrames = new AtomicInteger();
+        this.pendingState = new AtomicReference<>();
+        this.sendSequence = new AtomicLong();
+        this.droppedStates = new AtomicLong();
+        this.writeScheduled = new AtomicBoolean(false);
+        this.closed = new AtomicBoolean(false);
+        this.lastAckedTick = new AtomicLong(StateDeltaMessage.KEYFRAME);
+        this.playerId = -1;
+    }
+
+    void onReadable() {
+        try {
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                disconnect();
+                return;
+            }
+
+            readBuffer.flip();
+            readFrames();
+            readBuffer.compact();
+        } catch (IOException e) {
+            if (!closed.get()) {
+                server.log("Error reading from client " + playerId + ": " + e.getMessage());
+            }
+            disconnect();
+        }
+    }
+
+    private void readFrames() throws IOException {
+        while (!closed.get()) {
+            if (oversizedFrame != null) {
+                int chunk = Math.min(oversizedFrame.remaining(), readBuffer.remaining());
+                ByteBuffer slice = readBuffer.slice();
+                slice.limit(chunk);
+                oversizedFrame.put(slice);
+                readBuffer.position(readBuffer.position() + chunk);
+
+                if (oversizedFrame.hasRemaining()) return;
+
+                byte[] payload = oversizedFrame.array();
+                oversizedFrame = null;
+                onFrame(MessageCodec.deserialize(payload, 0, payload.length));
+                continue;
+            }
+
+            if (readBuffer.remaining() < MessageCodec.HEADER_SIZE) return;
+
+            int length = readBuffer.getInt(readBuffer.position());
+            MessageCodec.checkFrameLength(length);
+
+            if (MessageCodec.HEADER_SIZE + length > readBuffer.capacity()) {
+                readBuffer.getInt();
+                oversizedFrame = ByteBuffer.allocate(length);
+                continue;
+            }
+
+            if (readBuffer.remaining() < MessageCodec.HEADER_SIZE + length) return;
+
+            readBuffer.getInt();
+            byte[] payload = new byte[length];
+            readBuffer.get(payload);
+            onFrame(MessageCodec.deserialize(payload, 0, length));
+        }
+    }
+
+    private void onFrame(Message message) {
+        if (joined) {
+            server.handleMessage(this, message);
+            return;
+        }
+
+        if (message.getType() == MessageType.HEALTH_CHECK) {
+            sendMessage(server.healthStatus());
+            closeAfterFlush = true;
+            return;
+        }
+
+        if (message.getType() != MessageType.JOIN_REQUEST) {
+            disconnect();
+            return;
+        }
+
+        JoinMessage joinMsg = (JoinMessage) message;
+        JoinResponseMessage response = server.admitPlayer(joinMsg);
+        sendMessage(response);
+
+        if (response.isAccepted()) {
+            playerId = response.getAssignedPlayerId();
+            playerName = joinMsg.getPlayerName();
+            joined = true;
+            server.registerClient(this);
+        } else {
+            closeAfterFlush = true;
+        }
+    }
+
+    void onWritable() {
+        try {
+            while (true) {
+                QueuedFrame next;
+                while (inFlight.size() < MAX_GATHER
+                        && (next = QueuedFrame.takeNext(writeQueue, pendingState)) != null) {
+                    if (next.reliable()) {
+                        queuedFrames.decrementAndGet();
+                    }
+                    inFlight.add(new PendingWrite(next.frame(), next.frame().view()));
+                }
+                if (inFlight.isEmpty()) break;
+
+                int count = 0;
+                for (PendingWrite pending : inFlight) {
+                    gather[count++] = pending.view;
+                }
+                channel.write(gather, 0, count);
+                Arrays.fill(gather, 0, count, null);
+
+                while (!inFlight.isEmpty() && !inFlight.peek().view.hasRemaining()) {
+                    inFlight.poll().frame.release();
+                }
+
+                if (!inFlight.isEmpty()) return;
+            }
+
+            key.interestOps(SelectionKey.OP_READ);
+            if (closeAfterFlush) {
+                disconnect();
+            }
+        } catch (IOException e) {
+            server.log("Error sending to client " + playerId + ": " + e.getMessage());
+            disconnect();
+        }
+    }
+
+    @Override
+    public void sendMessage(Message message) {
+        SharedFrame frame = transport.encodeFrame(message);
+        sendFrame(frame);
+        frame.release();
+    }
+
+    @Override
+    public void sendFrame(SharedFrame frame) {
+        if (!isConnected()) return;
+
+        if (queuedFrames.incrementAndGet() > MAX_QUEUED_FRAMES) {
+            // Reliable messages are never dropped, so a client this far behind is cut off instead
+            server.log("Client " + playerId + " outbound queue full, disconnecting");
+            disconnect();
+            return;
+        }
+
+        writeQueue.add(queued(frame, true));
+        if (closed.get()) {
+            // disconnect() may have drained the queue before the add; the frame must not be left in it
+            releaseQueued();
+            return;
+        }
+        scheduleWrite();
+    }
+
+    @Override
+    public void sendStateFrame(SharedFrame frame) {
+        if (!isConnected()) return;
+
+        QueuedFrame stale = pendingState.getAndSet(queued(frame, false));
+        if (stale != null) {
+            stale.frame().release();
+            droppedStates.incrementAndGet();
+        }
+        if (closed.get()) {
+            releaseQueued();
+            return;
+        }
+        scheduleWrite();
+    }
+
+    // Retains the frame for the queue and tags it with its place in the send order
+    private QueuedFrame queued(SharedFrame frame, boolean reliable) {
+        return new QueuedFrame(frame.retain(), sendSequence.incrementAndGet(), reliable);
+    }
+
+    private void scheduleWrite() {
+        if (worker.inWorkerThread()) {
+            enableWrite();
+        } else if (writeScheduled.compareAndSet(false, true)) {
+            worker.execute(() -> {
+                writeScheduled.set(false);
+                enableWrite();
+            });
+        }
+    }
+
+    private void enableWrite() {
+        if (key.isValid()) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        if (!closed.compareAndSet(false, true)) return;
+
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing connection for client " + playerId);
+        }
+
+        if (worker.inWorkerThread()) {
+            releasePending();
+        } else {
+            worker.execute(this::releasePending);
+        }
+
+        if (joined) {
+            server.removePlayer(playerId);
+        }
+    }
+
+    private void releasePending() {
+        PendingWrite pending;
+        while ((pending = inFlight.poll()) != null) {
+            pending.frame.release();
+        }
+        releaseQueued();
+    }
+
+    // Safe from any thread: each poll hands a frame to exactly one caller
+    private void releaseQueued() {
+        QueuedFrame queued;
+        while ((queued = writeQueue.poll()) != null) {
+            queued.frame().release();
+        }
+
+        queued = pendingState.getAndSet(null);
+        if (queued != null) {
+            queued.frame().release();
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return !closed.get() && channel.isOpen();
+    }
+
+    @Override
+    public long getDroppedStateCount() {
+        return droppedStates.get();
+    }
+
+    @Override
+    public long getLastAckedTick() {
+        return lastAckedTick.get();
+    }
+
+    @Override
+    public void acknowledgeTick(long tick) {
+        lastAckedTick.accumulateAndGet(tick, Math::max);
+    }
+
+    @Override
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    @Override
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    private record PendingWrite(SharedFrame frame, ByteBuffer view) {}
+}
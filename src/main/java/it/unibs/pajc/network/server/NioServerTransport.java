@@ -0,0 +1,190 @@
+package it.unibs.pajc.network.server;
+
+import it.unibs.pajc.network.protocol.Message;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class NioServerTransport implements ServerTransport {
+
+    public static final int DEFAULT_IO_THREADS =
+        Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    private final GameServer server;
+    private final IoWorker[] workers;
+    private final FrameBufferPool bufferPool;
+
+    private ServerSocketChannel serverChannel;
+    private Selector acceptSelector;
+    private Thread acceptThread;
+    private volatile boolean running;
+    private int nextWorker;
+
+    public NioServerTransport(GameServer server) {
+        this(server, DEFAULT_IO_THREADS);
+    }
+
+    public NioServerTransport(GameServer server, int ioThreads) {
+        this.server = server;
+        this.workers = new IoWorker[Math.max(1, ioThreads)];
+        this.bufferPool = new FrameBufferPool();
+    }
+
+    @Override
+    public SharedFrame encodeFrame(Message message) {
+        return SharedFrame.direct(message, bufferPool);
+    }
+
+    @Override
+    public void start(int port) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+
+        acceptSelector = Selector.open();
+        serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new IoWorker(i);
+            workers[i].start();
+        }
+
+        acceptThread = new Thread(this::acceptClients, "NIO-Accept");
+        acceptThread.start();
+    }
+
+    private void acceptClients() {
+        while (running) {
+            try {
+                acceptSelector.select();
+                acceptSelector.selectedKeys().clear();
+
+                SocketChannel channel;
+                while ((channel = serverChannel.accept()) != null) {
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    workers[nextWorker].register(channel);
+                    // Wraps instead of counting every accept, which would overflow on a long-running server
+                    nextWorker = (nextWorker + 1) % workers.length;
+                }
+            } catch (ClosedSelectorException | ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                if (running) {
+                    server.log("Error accepting client: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+
+        try {
+            if (acceptSelector != null) acceptSelector.close();
+            if (serverChannel != null) serverChannel.close();
+        } catch (IOException e) {
+            server.log("Error closing server channel: " + e.getMessage());
+        }
+
+        for (IoWorker worker : workers) {
+            if (worker != null) worker.shutdown();
+        }
+    }
+
+    final class IoWorker implements Runnable {
+
+        private final Selector selector;
+        private final Queue<Runnable> tasks;
+        private final Thread thread;
+
+        private IoWorker(int index) throws IOException {
+            this.selector = Selector.open();
+            this.tasks = new ConcurrentLinkedQueue<>();
+            this.thread = new Thread(this, "NIO-Worker-" + index);
+        }
+
+        private void start() {
+            thread.start();
+        }
+
+        private void register(SocketChannel channel) {
+            execute(() -> {
+                try {
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                    key.attach(new NioConnection(server, NioServerTransport.this, this, channel, key));
+                } catch (ClosedChannelException e) {
+                    server.log("Connection closed before registration");
+                }
+            });
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        boolean inWorkerThread() {
+            return Thread.currentThread() == thread;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                } catch (ClosedSelectorException e) {
+                    break;
+                } catch (IOException e) {
+                    server.log("Selector error: " + e.getMessage());
+                    break;
+                }
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    NioConnection connection = (NioConnection) key.attachment();
+                    if (connection == null || !key.isValid()) continue;
+
+                    if (key.isReadable()) {
+                        connection.onReadable();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.onWritable();
+                    }
+                }
+            }
+
+            if (!selector.isOpen()) return;
+
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof NioConnection connection) {
+                    connection.disconnect();
+                }
+            }
+
+            try {
+                selector.close();
+            } catch (IOException ignored) {}
+        }
+
+        private void shutdown() {
+            selector.wakeup();
+        }
+    }
+}
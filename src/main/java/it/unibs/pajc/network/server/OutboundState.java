@@ -0,0 +1,44 @@
+package it.unibs.pajc.network.server;
+
+import it.unibs.pajc.network.protocol.DatagramCodec;
+import it.unibs.pajc.network.protocol.StateDeltaMessage;
+
+// One state message for any number of receivers, encoded at most once per transport it is sent on:
+// as a stream frame for clients on TCP, as a datagram body for clients on UDP. Room tick thread only.
+final class OutboundState {
+
+    private final GameServer server;
+    private final StateDeltaMessage message;
+    private SharedFrame frame;
+    private byte[] datagram;
+
+    OutboundState(GameServer server, StateDeltaMessage message) {
+        this.server = server;
+        this.message = message;
+    }
+
+    long getTick() {
+        return message.getServerTick();
+    }
+
+    SharedFrame frame() {
+        if (frame == null) {
+            frame = server.encodeFrame(message);
+        }
+        return frame;
+    }
+
+    byte[] datagram() {
+        if (datagram == null) {
+            datagram = DatagramCodec.encodeMessage(message);
+        }
+        return datagram;
+    }
+
+    void release() {
+        if (frame != null) {
+            frame.release();
+            frame = null;
+        }
+    }
+}
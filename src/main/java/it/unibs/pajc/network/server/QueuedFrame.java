@@ -0,0 +1,25 @@
+package it.unibs.pajc.network.server;
+
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicReference;
+
+// A frame waiting in a connection's outbound queue or state slot, tagged with the order it was sent in.
+// Reliable frames and the newest state frame are kept apart so states can be replaced, but they still
+// go out in the order they were sent: a despawn must not overtake the snapshot before it.
+record QueuedFrame(SharedFrame frame, long sequence, boolean reliable) {
+
+    // Single consumer: only the connection's writer may call this
+    static QueuedFrame takeNext(Queue<QueuedFrame> reliable, AtomicReference<QueuedFrame> state) {
+        while (true) {
+            QueuedFrame head = reliable.peek();
+            QueuedFrame pending = state.get();
+            if (pending == null || (head != null && head.sequence < pending.sequence)) {
+                return head == null ? null : reliable.poll();
+            }
+            // A newer state may replace this one meanwhile; then look again
+            if (state.compareAndSet(pending, null)) {
+                return pending;
+            }
+        }
+    }
+}
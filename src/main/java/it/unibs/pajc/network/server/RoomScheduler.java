@@ -0,0 +1,166 @@
+package it.unibs.pajc.network.server;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Ticks every running room on one bounded work-stealing pool instead of a thread per room.
+// A single driver thread sleeps until the earliest room deadline and submits each due room as a task.
+// Anything that moves a deadline earlier (a tick finishing, a room starting, a player joining) wakes it.
+public class RoomScheduler {
+
+    // Matchmaker settings changed at runtime don't wake the driver; they apply within this long
+    private static final long MAX_IDLE_NANOS = 100_000_000L;
+
+    private final Set<GameRoom> rooms;
+    private final Matchmaker matchmaker;
+    private final GameServer server;
+    private final int workers;
+    private final AtomicLong dispatchedTicks;
+
+    private ForkJoinPool pool;
+    private volatile Thread driverThread;
+    private volatile boolean running;
+    private volatile long sleepingUntil;
+
+    public RoomScheduler(GameServer server, Matchmaker matchmaker, int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Worker count must be positive");
+        }
+        this.server = server;
+        this.matchmaker = matchmaker;
+        this.workers = workers;
+        this.rooms = ConcurrentHashMap.newKeySet();
+        this.dispatchedTicks = new AtomicLong();
+    }
+
+    public void start() {
+        // Async mode: room ticks are independent event-style tasks, so FIFO per worker suits them best
+        pool = new ForkJoinPool(workers, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        running = true;
+        driverThread = new Thread(this::drive, "Room-Scheduler");
+        driverThread.setDaemon(true);
+        driverThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (driverThread != null) {
+            // The driver must be gone before the pool stops accepting its submissions
+            driverThread.interrupt();
+            try {
+                driverThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            driverThread = null;
+        }
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pool = null;
+        }
+    }
+
+    void add(GameRoom room) {
+        rooms.add(room);
+        wake();
+    }
+
+    void remove(GameRoom room) {
+        rooms.remove(room);
+    }
+
+    // Makes the driver scan again now rather than at its planned wake-up
+    void wake() {
+        LockSupport.unpark(driverThread);
+    }
+
+    private void afterTick(GameRoom room) {
+        // The driver skipped this room while it ticked; wake it if the new deadline comes first
+        if (room.getNextDeadline() - sleepingUntil < 0) {
+            wake();
+        }
+    }
+
+    private void drive() {
+        while (running) {
+            long now = System.nanoTime();
+            long wakeAt = now + MAX_IDLE_NANOS;
+            // Ticks ending during the scan compare against this bound, so none is missed before it narrows
+            sleepingUntil = wakeAt;
+
+            if (matchmaker.isAutoStart()) {
+                List<GameRoom> waiting = matchmaker.waitingRooms();
+                for (GameRoom room : waiting) {
+                    if (matchmaker.shouldAutoStart(room, now)) {
+                        server.startRoom(room);
+                    } else if (matchmaker.autoStartDeadline(room) - now > 0) {
+                        wakeAt = Math.min(wakeAt, matchmaker.autoStartDeadline(room));
+                    }
+                }
+            }
+
+            for (GameRoom room : rooms) {
+                long deadline = room.getNextDeadline();
+                if (deadline - now > 0) {
+                    wakeAt = Math.min(wakeAt, deadline);
+                } else if (room.tryBeginTick()) {
+                    dispatchedTicks.incrementAndGet();
+                    pool.execute(() -> {
+                        room.tick();
+                        afterTick(room);
+                    });
+                }
+                // Otherwise its previous tick is still queued or running; the room's own catch-up
+                // and lateness metrics account for the delay
+            }
+
+            // An unpark that lands before the park makes it return at once
+            sleepingUntil = wakeAt;
+            long remaining = wakeAt - System.nanoTime();
+            if (remaining > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            if (Thread.interrupted()) {
+                return;
+            }
+        }
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public long getDispatchedTicks() {
+        return dispatchedTicks.get();
+    }
+
+    public long getStolenTasks() {
+        ForkJoinPool current = pool;
+        return current != null ? current.getStealCount() : 0;
+    }
+
+    public long getQueuedTicks() {
+        ForkJoinPool current = pool;
+        return current != null ? current.getQueuedSubmissionCount() + current.getQueuedTaskCount() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("rooms=%d workers=%d dispatched=%d queued=%d stolen=%d",
+            getRoomCount(), workers, getDispatchedTicks(), getQueuedTicks(), getStolenTasks());
+    }
+}
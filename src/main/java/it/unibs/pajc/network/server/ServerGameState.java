@@ -1,41 +1,78 @@
 package it.unibs.pajc.network.server;
 
+import it.unibs.pajc.collision.CollisionResolver;
 import it.unibs.pajc.core.Particle;
 import it.unibs.pajc.core.PhysicsConstants;
 import it.unibs.pajc.core.PhysicsWorld;
+import it.unibs.pajc.core.PlayerMovement;
 import it.unibs.pajc.core.Vector2D;
+import it.unibs.pajc.network.protocol.EntityInfo;
+import it.unibs.pajc.network.protocol.SnapshotCodec;
 import it.unibs.pajc.network.protocol.StateUpdateMessage;
 import javafx.scene.paint.Color;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 public class ServerGameState {
 
     private final PhysicsWorld physicsWorld;
     private final Map<Integer, PlayerInfo> players;
+    private final Map<Integer, PlayerInfo> playersByEntity;
     private final Map<Integer, Long> lastProcessedInput;
-
-    private long serverTick;
+    // Spawn slots held by seated players; a newcomer takes the first free one, not one per head count
+    private final BitSet spawnSlots;
+    private final WorldHistory history;
+    private final CollisionResolver collisionResolver;
+    private final int simulationHz;
+    private final long tickNanos;
+
+    // Advanced only by the tick in progress, but read by connection threads for pongs and the replay end
+    private volatile long serverTick;
     private boolean gameStarted;
+    private boolean lagCompensation;
+    private long compensatedContacts;
+    // Hits compensated during the last update, and recorded hits waiting to be repeated by the next
+    private List<CompensatedHit> tickHits;
+    private List<CompensatedHit> recordedHits;
+
+    public static final double WORLD_WIDTH = PhysicsConstants.WORLD_WIDTH;
+    public static final double WORLD_HEIGHT = PhysicsConstants.WORLD_HEIGHT;
 
-    public static final double WORLD_WIDTH = 1000;
-    public static final double WORLD_HEIGHT = 700;
+    // Separation leaves resting particles about a pixel apart, which on screen is still touching
+    private static final double CONTACT_MARGIN = 2.0;
 
     public ServerGameState() {
+        this(PhysicsConstants.TICK_RATE);
+    }
+
+    public ServerGameState(int simulationHz) {
         this.physicsWorld = new PhysicsWorld(WORLD_WIDTH, WORLD_HEIGHT, true);
-        this.players = new ConcurrentHashMap<>();
+        // Sorted so every pass over the players (inputs, snapshots, hashing) runs in player id order
+        this.players = new ConcurrentSkipListMap<>();
+        this.playersByEntity = new ConcurrentHashMap<>();
         this.lastProcessedInput = new ConcurrentHashMap<>();
+        this.spawnSlots = new BitSet();
+        this.history = new WorldHistory(PhysicsConstants.LAG_COMPENSATION_MS * simulationHz / 1000 + 1,
+            PhysicsConstants.MAX_PLAYERS);
+        this.collisionResolver = new CollisionResolver();
+        this.simulationHz = simulationHz;
+        this.tickNanos = 1_000_000_000L / simulationHz;
         this.serverTick = 0;
         this.gameStarted = false;
+        this.lagCompensation = true;
     }
 
-    public synchronized int addPlayer(String name, Color color) {
-        int playerId = players.size() + 1;
-
-        Vector2D spawnPosition = getSpawnPosition(playerId);
+    // Player ids are handed out server-wide by GameServer; spawn slots are per room
+    public synchronized void addPlayer(int playerId, String name, Color color) {
+        // On the snapshot grid from the start, like every state after it
+        int spawnSlot = spawnSlots.nextClearBit(0);
+        Vector2D spawnPosition = SnapshotCodec.quantizePosition(getSpawnPosition(spawnSlot + 1));
 
         Particle particle = new Particle(
             "player-" + playerId,
@@ -47,67 +84,221 @@ public class ServerGameState {
             Vector2D.ZERO
         );
 
+        // The world hands out the numeric handle that identifies the entity on the wire
+        physicsWorld.addParticle(particle);
         PlayerInfo info = new PlayerInfo(playerId, name, particle);
+        info.spawnSlot = spawnSlot;
+        spawnSlots.set(spawnSlot);
         players.put(playerId, info);
-        physicsWorld.addParticle(particle);
+        playersByEntity.put(info.entityId, info);
         lastProcessedInput.put(playerId, 0L);
+    }
+
+    // Rebuilds a player exactly as recorded, keeping its entity id; used to restore replay keyframes
+    public synchronized void restorePlayer(EntityInfo entity, StateUpdateMessage.PlayerState state,
+                                           Vector2D heldDirection) {
+        Particle particle = entity.createParticle(state);
+        physicsWorld.addParticle(particle);
 
-        return playerId;
+        PlayerInfo info = new PlayerInfo(entity.playerId, entity.name, particle);
+        info.heldDirection = heldDirection != null ? heldDirection : Vector2D.ZERO;
+        info.ticksSinceInput = state.ticksSinceInput;
+        players.put(entity.playerId, info);
+        playersByEntity.put(info.entityId, info);
+        lastProcessedInput.put(entity.playerId, state.lastProcessedInput);
     }
 
-    private Vector2D getSpawnPosition(int playerId) {
+    private Vector2D getSpawnPosition(int slot) {
         // Spawn players close together in the center area, spaced to avoid overlap
         double centerX = WORLD_WIDTH / 2;
         double centerY = WORLD_HEIGHT / 2;
         double spacing = 80; // Enough space to avoid overlap (radius is ~20)
 
-        return switch (playerId) {
+        return switch (slot) {
             case 1 -> new Vector2D(centerX - spacing, centerY - spacing);
             case 2 -> new Vector2D(centerX + spacing, centerY - spacing);
             case 3 -> new Vector2D(centerX - spacing, centerY + spacing);
             case 4 -> new Vector2D(centerX + spacing, centerY + spacing);
-            default -> new Vector2D(centerX, centerY);
+            default -> getArenaSpawnPosition(slot - 5);
         };
     }
 
+    // Larger arenas: fill a grid across the world, wrapping around once it is full
+    private Vector2D getArenaSpawnPosition(int index) {
+        double spacing = PhysicsConstants.DEFAULT_PARTICLE_RADIUS * 2.5;
+        int perRow = (int) ((WORLD_WIDTH - 2 * spacing) / spacing);
+        int rows = (int) ((WORLD_HEIGHT - 2 * spacing) / spacing);
+        int slot = index % (perRow * rows);
+
+        return new Vector2D(spacing + (slot % perRow) * spacing, spacing + (slot / perRow) * spacing);
+    }
+
     public synchronized void removePlayer(int playerId) {
         PlayerInfo info = players.remove(playerId);
         if (info != null) {
             physicsWorld.removeParticle(info.particle.getId());
+            playersByEntity.remove(info.entityId);
+            if (info.spawnSlot >= 0) {
+                spawnSlots.clear(info.spawnSlot);
+            }
         }
         lastProcessedInput.remove(playerId);
     }
 
-    public void applyInput(int playerId, Vector2D direction, long inputSequence) {
+    // Inputs are held: the direction keeps being applied every tick until the next input replaces it.
+    // Returns false for inputs from unknown players and for duplicate or out-of-order sequences
+    public boolean applyInput(int playerId, Vector2D direction, long inputSequence) {
         PlayerInfo info = players.get(playerId);
-        if (info == null) return;
-
-        Particle particle = info.particle;
-        if (direction.magnitudeSquared() > 0) {
-            // Apply velocity boost - accelerate in the direction pressed
-            double acceleration = 15.0; // Units per frame
-            Vector2D velocityBoost = direction.normalize().multiply(acceleration);
-            Vector2D newVel = particle.getVelocity().add(velocityBoost);
-
-            // Cap max speed at 600 - allows building up significant momentum
-            double maxSpeed = 600;
-            if (newVel.magnitude() > maxSpeed) {
-                newVel = newVel.normalize().multiply(maxSpeed);
-            }
-            particle.setVelocity(newVel);
+        if (info == null) return false;
+
+        if (inputSequence <= lastProcessedInput.getOrDefault(playerId, 0L)) return false;
+
+        // Keepalives repeat the held direction; only a new push is judged against what the player saw
+        if (!direction.equals(info.heldDirection)) {
+            info.compensationPending = lagCompensation;
         }
+        info.heldDirection = direction;
+        info.ticksSinceInput = 0;
 
         lastProcessedInput.put(playerId, inputSequence);
+        return true;
     }
 
     public void update(double deltaTime) {
         if (!gameStarted) return;
 
         serverTick++;
+        tickHits = null;
+
+        for (PlayerInfo info : players.values()) {
+            PlayerMovement.applyInput(info.particle, info.heldDirection);
+            if (info.compensationPending) {
+                // Judged once the new input has been turned into velocity
+                compensateContacts(info, info.heldDirection);
+                info.compensationPending = false;
+            }
+            if (recordedHits != null) {
+                repeatHits(info);
+            }
+            info.ticksSinceInput++;
+        }
+        recordedHits = null;
 
-        // Lower damping = velocities maintained longer = more noticeable speed differences
-        physicsWorld.setDamping(0.98);
+        physicsWorld.setDamping(PhysicsConstants.PLAYER_DAMPING);
         physicsWorld.update(deltaTime);
+
+        // Keep the authoritative state on the same grid the clients receive
+        for (PlayerInfo info : players.values()) {
+            Particle p = info.particle;
+            p.setPosition(SnapshotCodec.quantizePosition(p.getPosition()));
+            p.setVelocity(SnapshotCodec.quantizeVelocity(p.getVelocity()));
+        }
+
+        history.capture(serverTick, physicsWorld);
+    }
+
+    // Latency as last reported by the client; written by the network threads
+    public void setPlayerLatency(int playerId, long rttNanos, long interpolationDelayNanos) {
+        PlayerInfo info = players.get(playerId);
+        if (info != null) {
+            info.rttNanos = rttNanos;
+            info.interpolationDelayNanos = interpolationDelayNanos;
+        }
+    }
+
+    // The tick a player was looking at when they sent an input arriving now: the input spent half an
+    // RTT in flight, and the other entities on their screen were an interpolation delay behind that.
+    // Clamped to what the history still holds.
+    public long viewTickFor(int playerId) {
+        PlayerInfo info = players.get(playerId);
+        return info != null ? viewTickFor(info) : serverTick;
+    }
+
+    private long viewTickFor(PlayerInfo info) {
+        long behindNanos = info.rttNanos / 2 + info.interpolationDelayNanos;
+        long behindTicks = (behindNanos + tickNanos / 2) / tickNanos;
+        return Math.max(serverTick - behindTicks, history.getOldestTick());
+    }
+
+    // Rewinds the other entities to the tick the player was looking at and returns the ones a push in
+    // `direction` from where the player is now reaches there. Empty if that tick is now or has left
+    // the history. Game loop only; nothing is changed.
+    public List<Contact> contactsAtViewTick(int playerId, Vector2D direction) {
+        PlayerInfo info = players.get(playerId);
+        return info != null ? contactsAtViewTick(info, direction) : List.of();
+    }
+
+    private List<Contact> contactsAtViewTick(PlayerInfo info, Vector2D direction) {
+        if (direction.x() == 0 && direction.y() == 0) return List.of();
+
+        long viewTick = viewTickFor(info);
+        if (viewTick >= serverTick) return List.of();
+        int slot = history.slotOf(viewTick);
+        if (slot < 0) return List.of();
+
+        Particle self = info.particle;
+        double selfX = self.getPosition().x();
+        double selfY = self.getPosition().y();
+
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < history.countAt(slot); i++) {
+            int handle = history.handleAt(slot, i);
+            if (handle == info.entityId || !playersByEntity.containsKey(handle)) continue;
+
+            double reach = self.getRadius() + history.radiusAt(slot, i) + CONTACT_MARGIN;
+            double dx = history.xAt(slot, i) - selfX;
+            double dy = history.yAt(slot, i) - selfY;
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            if (distance >= reach || distance == 0) continue;
+            if (direction.x() * dx + direction.y() * dy <= 0) continue;
+
+            contacts.add(new Contact(handle, new Vector2D(dx / distance, dy / distance)));
+        }
+        return contacts;
+    }
+
+    // A player pushing into an entity they saw touching them should hit it, even if on the server it
+    // has already moved on. Contacts that still overlap now are left to the regular collision pass.
+    private void compensateContacts(PlayerInfo info, Vector2D direction) {
+        Particle self = info.particle;
+        for (Contact contact : contactsAtViewTick(info, direction)) {
+            Particle other = playersByEntity.get(contact.entityId()).particle;
+            double reach = self.getRadius() + other.getRadius() + CONTACT_MARGIN;
+            if (self.getPosition().distanceTo(other.getPosition()) < reach) continue;
+
+            Vector2D impulse = collisionResolver.resolveAlong(self, other, contact.normal());
+            if (impulse != null) {
+                addHit(new CompensatedHit(info.entityId, contact.entityId(), impulse));
+            }
+        }
+    }
+
+    // Replays have no latency to judge by, so they apply the recorded impulses at the same point
+    private void repeatHits(PlayerInfo info) {
+        for (CompensatedHit hit : recordedHits) {
+            PlayerInfo otherInfo = playersByEntity.get(hit.otherEntityId());
+            if (hit.entityId() != info.entityId || otherInfo == null) continue;
+            collisionResolver.applyImpulse(info.particle, otherInfo.particle, hit.impulse());
+            addHit(hit);
+        }
+    }
+
+    private void addHit(CompensatedHit hit) {
+        if (tickHits == null) {
+            tickHits = new ArrayList<>();
+        }
+        tickHits.add(hit);
+        compensatedContacts++;
+    }
+
+    // What lag compensation did in the last update, for the replay recorder; game loop only
+    public List<CompensatedHit> getCompensatedHits() {
+        return tickHits != null ? tickHits : List.of();
+    }
+
+    // Hits recorded for the next tick, applied during the next update() in place of compensation
+    public void repeatCompensatedHits(List<CompensatedHit> hits) {
+        recordedHits = hits;
     }
 
     public List<StateUpdateMessage.PlayerState> getPlayerStates() {
@@ -115,24 +306,47 @@ public class ServerGameState {
 
         for (PlayerInfo info : players.values()) {
             Particle p = info.particle;
-            Color c = p.getColor();
 
             states.add(new StateUpdateMessage.PlayerState(
-                info.playerId,
-                p.getId(),
+                info.entityId,
                 p.getPosition(),
                 p.getVelocity(),
-                p.getRadius(),
-                c.getRed(),
-                c.getGreen(),
-                c.getBlue(),
-                lastProcessedInput.getOrDefault(info.playerId, 0L)
+                lastProcessedInput.getOrDefault(info.playerId, 0L),
+                info.ticksSinceInput
             ));
         }
 
         return states;
     }
 
+    // Entity id to the direction each player is holding; game loop only
+    public Map<Integer, Vector2D> getHeldDirections() {
+        Map<Integer, Vector2D> held = new LinkedHashMap<>();
+        for (PlayerInfo info : players.values()) {
+            held.put(info.entityId, info.heldDirection);
+        }
+        return held;
+    }
+
+    public List<EntityInfo> getEntityInfos() {
+        List<EntityInfo> infos = new ArrayList<>();
+        for (PlayerInfo info : players.values()) {
+            infos.add(info.toEntityInfo());
+        }
+        return infos;
+    }
+
+    public EntityInfo getEntityInfo(int entityId) {
+        PlayerInfo info = playersByEntity.get(entityId);
+        return info != null ? info.toEntityInfo() : null;
+    }
+
+    // -1 for players that have left
+    public int getEntityId(int playerId) {
+        PlayerInfo info = players.get(playerId);
+        return info != null ? info.entityId : -1;
+    }
+
     public void startGame() {
         this.gameStarted = true;
     }
@@ -149,10 +363,51 @@ public class ServerGameState {
         return serverTick;
     }
 
+    // Only for restoring recorded state; the game loop owns the tick otherwise
+    public void setServerTick(long serverTick) {
+        this.serverTick = serverTick;
+    }
+
     public PhysicsWorld getPhysicsWorld() {
         return physicsWorld;
     }
 
+    public WorldHistory getHistory() {
+        return history;
+    }
+
+    // Lockstep mode for replays and cross-checks: fixed time step, fixed processing order. Lag
+    // compensation depends on measured latency, which no input log reproduces, so it is switched off;
+    // replays repeat the recorded hits instead.
+    public void setDeterministic() {
+        physicsWorld.setDeterministic(1.0 / simulationHz);
+        lagCompensation = false;
+    }
+
+    // Hash of everything the next tick depends on: the world plus each player's held input
+    public long getStateHash() {
+        long hash = PhysicsWorld.mix(physicsWorld.stateHash(), serverTick);
+        for (PlayerInfo info : players.values()) {
+            hash = PhysicsWorld.mix(hash, info.playerId);
+            hash = PhysicsWorld.mix(hash, Double.doubleToLongBits(info.heldDirection.x()));
+            hash = PhysicsWorld.mix(hash, Double.doubleToLongBits(info.heldDirection.y()));
+            hash = PhysicsWorld.mix(hash, lastProcessedInput.getOrDefault(info.playerId, 0L));
+        }
+        return hash;
+    }
+
+    public void setLagCompensation(boolean enabled) {
+        this.lagCompensation = enabled;
+    }
+
+    public boolean isLagCompensation() {
+        return lagCompensation;
+    }
+
+    public long getCompensatedContacts() {
+        return compensatedContacts;
+    }
+
     public PlayerInfo getPlayerInfo(int playerId) {
         return players.get(playerId);
     }
@@ -161,15 +416,39 @@ public class ServerGameState {
         return players;
     }
 
+    // An entity reached in the rewound world, and the unit direction from the player to it there
+    public record Contact(int entityId, Vector2D normal) {}
+
+    // A compensated hit as applied: the impulse given to the pushing player's entity, the other getting
+    // the opposite
+    public record CompensatedHit(int entityId, int otherEntityId, Vector2D impulse) {}
+
     public static class PlayerInfo {
         public final int playerId;
         public final String name;
         public final Particle particle;
+        public final int entityId;
+
+        // Only touched by the game loop
+        public Vector2D heldDirection = Vector2D.ZERO;
+        public int ticksSinceInput;
+        public boolean compensationPending;
+        // Restored players never took a spawn slot
+        int spawnSlot = -1;
+
+        public volatile long rttNanos;
+        public volatile long interpolationDelayNanos;
 
         public PlayerInfo(int playerId, String name, Particle particle) {
             this.playerId = playerId;
             this.name = name;
             this.particle = particle;
+            this.entityId = particle.getHandle();
+        }
+
+        public EntityInfo toEntityInfo() {
+            return new EntityInfo(entityId, playerId, name, particle.getRadius(), particle.getMass(),
+                particle.getColor());
         }
     }
 }
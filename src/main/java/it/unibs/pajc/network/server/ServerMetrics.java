@@ -0,0 +1,169 @@
+package it.unibs.pajc.network.server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ServerMetrics {
+
+    private final AtomicLong inputsQueued = new AtomicLong();
+    private final AtomicLong inputsRejected = new AtomicLong();
+    private final AtomicLong inputsDiscarded = new AtomicLong();
+    private volatile int inputQueueDepth;
+    private volatile int maxInputQueueDepth;
+
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong tickOverruns = new AtomicLong();
+    private final AtomicLong skippedTicks = new AtomicLong();
+    private final AtomicLong totalTickNanos = new AtomicLong();
+    private volatile long maxTickNanos;
+    private volatile long maxTickLatenessNanos;
+
+    private final AtomicLong stalenessTicks = new AtomicLong();
+    private final AtomicLong stalenessSamples = new AtomicLong();
+    private final AtomicLong budgetLimitedSnapshots = new AtomicLong();
+    private volatile long maxStalenessTicks;
+
+    private final Map<Integer, Long> clientRttNanos = new ConcurrentHashMap<>();
+
+    void recordInputQueued() {
+        inputsQueued.incrementAndGet();
+    }
+
+    void recordInputRejected() {
+        inputsRejected.incrementAndGet();
+    }
+
+    void recordInputDiscarded() {
+        inputsDiscarded.incrementAndGet();
+    }
+
+    // Only called from the game loop
+    void recordInputQueueDepth(int depth) {
+        inputQueueDepth = depth;
+        if (depth > maxInputQueueDepth) {
+            maxInputQueueDepth = depth;
+        }
+    }
+
+    // A tick overruns when its work takes longer than the tick period
+    void recordTick(long durationNanos, long latenessNanos, long periodNanos) {
+        ticks.incrementAndGet();
+        totalTickNanos.addAndGet(durationNanos);
+        if (durationNanos > periodNanos) {
+            tickOverruns.incrementAndGet();
+        }
+        if (durationNanos > maxTickNanos) {
+            maxTickNanos = durationNanos;
+        }
+        if (latenessNanos > maxTickLatenessNanos) {
+            maxTickLatenessNanos = latenessNanos;
+        }
+    }
+
+    void recordSkippedTicks(long count) {
+        skippedTicks.addAndGet(count);
+    }
+
+    // Ticks since each entity a client knows about was last sent to it, summed over one snapshot
+    void recordEntityStaleness(long totalTicks, int entities, long maxTicks, boolean budgetLimited) {
+        stalenessTicks.addAndGet(totalTicks);
+        stalenessSamples.addAndGet(entities);
+        if (maxTicks > maxStalenessTicks) {
+            maxStalenessTicks = maxTicks;
+        }
+        if (budgetLimited) {
+            budgetLimitedSnapshots.incrementAndGet();
+        }
+    }
+
+    public double getAverageStalenessTicks() {
+        long samples = stalenessSamples.get();
+        return samples == 0 ? 0 : (double) stalenessTicks.get() / samples;
+    }
+
+    public long getMaxStalenessTicks() {
+        return maxStalenessTicks;
+    }
+
+    public long getBudgetLimitedSnapshots() {
+        return budgetLimitedSnapshots.get();
+    }
+
+    // RTT as measured and reported by each client in its pings
+    void recordClientRtt(int playerId, long rttNanos) {
+        if (rttNanos > 0) {
+            clientRttNanos.put(playerId, rttNanos);
+        }
+    }
+
+    void removeClient(int playerId) {
+        clientRttNanos.remove(playerId);
+    }
+
+    public double getAverageClientRttMillis() {
+        return clientRttNanos.values().stream().mapToLong(Long::longValue).average().orElse(0) / 1_000_000.0;
+    }
+
+    public double getMaxClientRttMillis() {
+        return clientRttNanos.values().stream().mapToLong(Long::longValue).max().orElse(0) / 1_000_000.0;
+    }
+
+    public long getTicks() {
+        return ticks.get();
+    }
+
+    public long getTickOverruns() {
+        return tickOverruns.get();
+    }
+
+    public long getSkippedTicks() {
+        return skippedTicks.get();
+    }
+
+    public double getAverageTickMillis() {
+        long count = ticks.get();
+        return count == 0 ? 0 : totalTickNanos.get() / (count * 1_000_000.0);
+    }
+
+    public double getMaxTickMillis() {
+        return maxTickNanos / 1_000_000.0;
+    }
+
+    public double getMaxTickLatenessMillis() {
+        return maxTickLatenessNanos / 1_000_000.0;
+    }
+
+    public long getInputsQueued() {
+        return inputsQueued.get();
+    }
+
+    public long getInputsRejected() {
+        return inputsRejected.get();
+    }
+
+    public long getInputsDiscarded() {
+        return inputsDiscarded.get();
+    }
+
+    public int getInputQueueDepth() {
+        return inputQueueDepth;
+    }
+
+    public int getMaxInputQueueDepth() {
+        return maxInputQueueDepth;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ticks=%d overruns=%d skipped=%d avg=%.3fms max=%.3fms late=%.3fms | " +
+                "inputs queued=%d rejected=%d discarded=%d depth=%d (max %d) | rtt avg=%.1fms max=%.1fms | " +
+                "staleness avg=%.2f max=%d ticks, budget-limited=%d",
+            getTicks(), getTickOverruns(), getSkippedTicks(),
+            getAverageTickMillis(), getMaxTickMillis(), getMaxTickLatenessMillis(),
+            getInputsQueued(), getInputsRejected(), getInputsDiscarded(),
+            getInputQueueDepth(), getMaxInputQueueDepth(),
+            getAverageClientRttMillis(), getMaxClientRttMillis(),
+            getAverageStalenessTicks(), getMaxStalenessTicks(), getBudgetLimitedSnapshots());
+    }
+}
@@ -0,0 +1,16 @@
+package it.unibs.pajc.network.server;
+
+import it.unibs.pajc.network.protocol.Message;
+
+import java.io.IOException;
+
+public interface ServerTransport {
+
+    void start(int port) throws IOException;
+
+    void stop();
+
+    default SharedFrame encodeFrame(Message message) {
+        return SharedFrame.heap(message);
+    }
+}
@@ -0,0 +1,22 @@
+package it.unibs.pajc.network.server;
+
+public enum ServerTransportType {
+    BLOCKING("Thread per connection"),
+    VIRTUAL_THREADS("Virtual thread per connection"),
+    NIO("NIO selector");
+
+    private final String displayName;
+
+    ServerTransportType(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
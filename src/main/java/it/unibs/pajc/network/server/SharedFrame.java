@@ -0,0 +1,67 @@
+package it.unibs.pajc.network.server;
+
+import it.unibs.pajc.network.protocol.Message;
+import it.unibs.pajc.network.protocol.MessageCodec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class SharedFrame {
+
+    private final byte[] bytes;
+    private final ByteBuffer buffer;
+    private final FrameBufferPool pool;
+    private final AtomicInteger refCount;
+
+    private SharedFrame(byte[] bytes, ByteBuffer buffer, FrameBufferPool pool) {
+        this.bytes = bytes;
+        this.buffer = buffer;
+        this.pool = pool;
+        this.refCount = new AtomicInteger(1);
+    }
+
+    public static SharedFrame heap(Message message) {
+        byte[] bytes = MessageCodec.encodeFrameBytes(message);
+        return new SharedFrame(bytes, ByteBuffer.wrap(bytes).asReadOnlyBuffer(), null);
+    }
+
+    // Serialized once, then copied once into a pooled direct buffer shared by every receiver
+    public static SharedFrame direct(Message message, FrameBufferPool pool) {
+        byte[] bytes = MessageCodec.encodeFrameBytes(message);
+        ByteBuffer direct = pool.acquire(bytes.length);
+        direct.put(bytes).flip();
+        return new SharedFrame(null, direct, pool);
+    }
+
+    // Each writer gets its own position/limit over the same bytes
+    public ByteBuffer view() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    public int length() {
+        return buffer.limit();
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        if (bytes != null) {
+            out.write(bytes);
+        } else {
+            byte[] copy = new byte[buffer.limit()];
+            view().get(copy);
+            out.write(copy);
+        }
+    }
+
+    public SharedFrame retain() {
+        refCount.incrementAndGet();
+        return this;
+    }
+
+    public void release() {
+        if (refCount.decrementAndGet() == 0 && pool != null) {
+            pool.release(buffer);
+        }
+    }
+}
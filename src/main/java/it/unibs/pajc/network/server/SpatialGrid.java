@@ -0,0 +1,94 @@
+package it.unibs.pajc.network.server;
+
+import it.unibs.pajc.core.Vector2D;
+import it.unibs.pajc.network.protocol.StateUpdateMessage;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+// Uniform grid over the world, rebuilt once per snapshot with a counting sort so queries touch
+// only the cells overlapping the view circle
+public class SpatialGrid {
+
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStart;
+
+    private StateUpdateMessage.PlayerState[] entries = new StateUpdateMessage.PlayerState[0];
+    private StateUpdateMessage.PlayerState[] sorted = new StateUpdateMessage.PlayerState[0];
+    private int[] entryCell = new int[0];
+    private int size;
+
+    public SpatialGrid(double width, double height, double cellSize) {
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.cellStart = new int[columns * rows + 1];
+    }
+
+    public void rebuild(Collection<StateUpdateMessage.PlayerState> states) {
+        size = states.size();
+        if (entries.length < size) {
+            entries = new StateUpdateMessage.PlayerState[size];
+            sorted = new StateUpdateMessage.PlayerState[size];
+            entryCell = new int[size];
+        }
+
+        Arrays.fill(cellStart, 0);
+        int i = 0;
+        for (StateUpdateMessage.PlayerState state : states) {
+            int cell = cellOf(state.posX, state.posY);
+            entries[i] = state;
+            entryCell[i] = cell;
+            cellStart[cell + 1]++;
+            i++;
+        }
+
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        int[] cursor = Arrays.copyOf(cellStart, cellStart.length);
+        for (i = 0; i < size; i++) {
+            sorted[cursor[entryCell[i]]++] = entries[i];
+        }
+    }
+
+    public void query(Vector2D center, double radius, Consumer<StateUpdateMessage.PlayerState> consumer) {
+        int minCol = clamp((int) Math.floor((center.x() - radius) / cellSize), columns);
+        int maxCol = clamp((int) Math.floor((center.x() + radius) / cellSize), columns);
+        int minRow = clamp((int) Math.floor((center.y() - radius) / cellSize), rows);
+        int maxRow = clamp((int) Math.floor((center.y() + radius) / cellSize), rows);
+        double radiusSquared = radius * radius;
+
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                int cell = row * columns + col;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    StateUpdateMessage.PlayerState state = sorted[k];
+                    double dx = state.posX - center.x();
+                    double dy = state.posY - center.y();
+                    if (dx * dx + dy * dy <= radiusSquared) {
+                        consumer.accept(state);
+                    }
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int cellOf(double x, double y) {
+        int col = clamp((int) Math.floor(x / cellSize), columns);
+        int row = clamp((int) Math.floor(y / cellSize), rows);
+        return row * columns + col;
+    }
+
+    private static int clamp(int value, int count) {
+        return Math.max(0, Math.min(count - 1, value));
+    }
+}
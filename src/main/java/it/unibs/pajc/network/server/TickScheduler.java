@@ -0,0 +1,103 @@
+package it.unibs.pajc.network.server;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+public class TickScheduler {
+
+    private static final int MAX_CATCH_UP_TICKS = 5;
+
+    private final int simulationHz;
+    private final int snapshotHz;
+    private final long spinNanos;
+    private final ServerMetrics metrics;
+
+    private boolean started;
+    private long nextTick;
+    private long nextSnapshot;
+
+    public TickScheduler(int simulationHz, int snapshotHz, long spinNanos, ServerMetrics metrics) {
+        if (simulationHz <= 0 || snapshotHz <= 0) {
+            throw new IllegalArgumentException("Tick rates must be positive");
+        }
+        this.simulationHz = simulationHz;
+        this.snapshotHz = snapshotHz;
+        this.spinNanos = Math.max(0, spinNanos);
+        this.metrics = metrics;
+    }
+
+    // Drives the ticks from the calling thread until keepRunning turns false
+    public void run(BooleanSupplier keepRunning, Runnable simulationTick, Runnable snapshotTick) {
+        while (keepRunning.getAsBoolean()) {
+            long deadline = runDue(keepRunning, simulationTick, snapshotTick);
+            if (!waitUntil(deadline, spinNanos)) {
+                return;
+            }
+        }
+    }
+
+    // Runs whatever ticks are due right now and returns the deadline of the next one, so a shared
+    // scheduler can drive many of these without a thread each. Not thread-safe: one caller at a time.
+    public long runDue(BooleanSupplier keepRunning, Runnable simulationTick, Runnable snapshotTick) {
+        long tickPeriod = 1_000_000_000L / simulationHz;
+        long snapshotPeriod = 1_000_000_000L / snapshotHz;
+        long now = System.nanoTime();
+
+        if (!started) {
+            nextTick = now;
+            nextSnapshot = now;
+            started = true;
+        }
+
+        // Fixed-step catch-up, bounded so a long stall does not trigger a burst of ticks
+        if (now - nextTick > MAX_CATCH_UP_TICKS * tickPeriod) {
+            long skipped = (now - nextTick) / tickPeriod;
+            metrics.recordSkippedTicks(skipped);
+            nextTick += skipped * tickPeriod;
+        }
+
+        while (now >= nextTick && keepRunning.getAsBoolean()) {
+            long start = System.nanoTime();
+            simulationTick.run();
+            long duration = System.nanoTime() - start;
+
+            metrics.recordTick(duration, start - nextTick, tickPeriod);
+            nextTick += tickPeriod;
+            now = System.nanoTime();
+        }
+
+        if (now >= nextSnapshot && keepRunning.getAsBoolean()) {
+            snapshotTick.run();
+            nextSnapshot += snapshotPeriod;
+            if (now - nextSnapshot > snapshotPeriod) {
+                nextSnapshot = now + snapshotPeriod;
+            }
+        }
+
+        return Math.min(nextTick, nextSnapshot);
+    }
+
+    // Parks for most of the wait and spins the last spinNanos for sub-millisecond accuracy
+    static boolean waitUntil(long deadline, long spinNanos) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > spinNanos) {
+            LockSupport.parkNanos(remaining - spinNanos);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        while (deadline - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+        return true;
+    }
+
+    public int getSimulationHz() {
+        return simulationHz;
+    }
+
+    public int getSnapshotHz() {
+        return snapshotHz;
+    }
+}
@@ -0,0 +1,144 @@
+package it.unibs.pajc.network.server;
+
+import it.unibs.pajc.network.protocol.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.DatagramChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Unreliable side channel for state snapshots and client inputs; control traffic stays on TCP
+public class UdpServerChannel {
+
+    private final GameServer server;
+    private final NetworkConditioner conditioner;
+    private final Map<Integer, Session> sessions;
+
+    private DatagramChannel channel;
+    private Thread receiverThread;
+    private volatile boolean running;
+
+    public UdpServerChannel(GameServer server, NetworkConditioner conditioner) {
+        this.server = server;
+        this.conditioner = conditioner;
+        this.sessions = new ConcurrentHashMap<>();
+    }
+
+    public void open(int port) throws IOException {
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(port));
+        running = true;
+
+        receiverThread = new Thread(this::receiveLoop, "UDP-Receiver");
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+    }
+
+    public void registerPlayer(int playerId, long token) {
+        sessions.put(playerId, new Session(token));
+    }
+
+    public void removePlayer(int playerId) {
+        sessions.remove(playerId);
+    }
+
+    public boolean isBound(int playerId) {
+        Session session = sessions.get(playerId);
+        return session != null && session.address != null;
+    }
+
+    public void unbind(int playerId) {
+        Session session = sessions.get(playerId);
+        if (session != null) {
+            session.address = null;
+        }
+    }
+
+    public void sendState(int playerId, long sequence, byte[] message) {
+        Session session = sessions.get(playerId);
+        if (!running || session == null || session.address == null) return;
+
+        try {
+            for (ByteBuffer packet : DatagramCodec.fragment(sequence, ByteBuffer.wrap(message))) {
+                conditioner.send(channel, packet, session.address);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            server.log("UDP send to client " + playerId + " failed: " + e.getMessage());
+        }
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+        while (running) {
+            try {
+                buffer.clear();
+                SocketAddress from = channel.receive(buffer);
+                buffer.flip();
+
+                if (buffer.remaining() >= DatagramCodec.CLIENT_HEADER_SIZE) {
+                    handlePacket(buffer, from);
+                }
+            } catch (AsynchronousCloseException e) {
+                break;
+            } catch (IOException e) {
+                if (running) {
+                    server.log("UDP receive error: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handlePacket(ByteBuffer packet, SocketAddress from) throws IOException {
+        byte type = packet.get();
+        int playerId = packet.getInt();
+        long token = packet.getLong();
+
+        Session session = sessions.get(playerId);
+        if (session == null || session.token != token) return;
+
+        switch (type) {
+            // Binding takes a full round trip so both directions are known to work
+            case DatagramCodec.HELLO -> conditioner.send(channel, DatagramCodec.serverPacket(DatagramCodec.HELLO_ACK), from);
+            case DatagramCodec.HELLO_CONFIRM -> {
+                if (!from.equals(session.address)) {
+                    session.address = from;
+                    server.log("Player " + playerId + " switched snapshots to UDP");
+                }
+            }
+            case DatagramCodec.MESSAGE -> {
+                if (!from.equals(session.address)) return;
+
+                byte[] payload = new byte[packet.remaining()];
+                packet.get(payload);
+                server.handleDatagramMessage(playerId, DatagramCodec.decodeMessage(payload, 0, payload.length));
+            }
+            default -> {}
+        }
+    }
+
+    public void close() {
+        running = false;
+        sessions.clear();
+        conditioner.shutdown();
+
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException e) {
+            server.log("Error closing UDP channel: " + e.getMessage());
+        }
+    }
+
+    private static class Session {
+        private final long token;
+        private volatile SocketAddress address;
+
+        private Session(long token) {
+            this.token = token;
+        }
+    }
+}
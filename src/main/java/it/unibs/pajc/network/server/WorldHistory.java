@@ -0,0 +1,151 @@
+package it.unibs.pajc.network.server;
+
+import it.unibs.pajc.core.Particle;
+import it.unibs.pajc.core.PhysicsWorld;
+
+import java.util.Arrays;
+
+// Ring of per-tick particle snapshots for lag compensation. Every field lives in one flat primitive
+// array indexed by slot * stride + entity, so capture() writes plain numbers and allocates nothing
+// once the arrays have grown to the largest entity count seen. Only the simulation thread writes;
+// readers must run on that thread too.
+public class WorldHistory {
+
+    private final int capacity;
+    private final long[] ticks;
+    private final int[] counts;
+
+    private int stride;
+    private int[] handles;
+    private double[] posX;
+    private double[] posY;
+    private double[] velX;
+    private double[] velY;
+    private double[] radii;
+
+    private long newestTick = -1;
+
+    public WorldHistory(int capacity, int expectedEntities) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.ticks = new long[capacity];
+        this.counts = new int[capacity];
+        Arrays.fill(ticks, -1);
+        allocate(Math.max(1, expectedEntities));
+    }
+
+    private void allocate(int newStride) {
+        int size = capacity * newStride;
+        int[] newHandles = new int[size];
+        double[] newPosX = new double[size];
+        double[] newPosY = new double[size];
+        double[] newVelX = new double[size];
+        double[] newVelY = new double[size];
+        double[] newRadii = new double[size];
+
+        // Keep what is already recorded, re-laid out for the wider stride
+        for (int slot = 0; slot < capacity && handles != null; slot++) {
+            int from = slot * stride;
+            int to = slot * newStride;
+            int count = counts[slot];
+            System.arraycopy(handles, from, newHandles, to, count);
+            System.arraycopy(posX, from, newPosX, to, count);
+            System.arraycopy(posY, from, newPosY, to, count);
+            System.arraycopy(velX, from, newVelX, to, count);
+            System.arraycopy(velY, from, newVelY, to, count);
+            System.arraycopy(radii, from, newRadii, to, count);
+        }
+
+        stride = newStride;
+        handles = newHandles;
+        posX = newPosX;
+        posY = newPosY;
+        velX = newVelX;
+        velY = newVelY;
+        radii = newRadii;
+    }
+
+    public void capture(long tick, PhysicsWorld world) {
+        int count = world.getParticleCount();
+        if (count > stride) {
+            allocate(Math.max(count, stride * 2));
+        }
+
+        int slot = (int) Math.floorMod(tick, (long) capacity);
+        int base = slot * stride;
+        for (int i = 0; i < count; i++) {
+            Particle p = world.getParticleAt(i);
+            int index = base + i;
+            handles[index] = p.getHandle();
+            posX[index] = p.getPosition().x();
+            posY[index] = p.getPosition().y();
+            velX[index] = p.getVelocity().x();
+            velY[index] = p.getVelocity().y();
+            radii[index] = p.getRadius();
+        }
+
+        ticks[slot] = tick;
+        counts[slot] = count;
+        newestTick = Math.max(newestTick, tick);
+    }
+
+    // Slot holding the given tick, or -1 once it has been overwritten (or was never recorded)
+    public int slotOf(long tick) {
+        if (tick < 0) return -1;
+        int slot = (int) Math.floorMod(tick, (long) capacity);
+        return ticks[slot] == tick ? slot : -1;
+    }
+
+    public long getNewestTick() {
+        return newestTick;
+    }
+
+    public long getOldestTick() {
+        return newestTick < 0 ? -1 : Math.max(0, newestTick - capacity + 1);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int countAt(int slot) {
+        return counts[slot];
+    }
+
+    public int handleAt(int slot, int i) {
+        return handles[slot * stride + i];
+    }
+
+    public double xAt(int slot, int i) {
+        return posX[slot * stride + i];
+    }
+
+    public double yAt(int slot, int i) {
+        return posY[slot * stride + i];
+    }
+
+    public double velocityXAt(int slot, int i) {
+        return velX[slot * stride + i];
+    }
+
+    public double velocityYAt(int slot, int i) {
+        return velY[slot * stride + i];
+    }
+
+    public double radiusAt(int slot, int i) {
+        return radii[slot * stride + i];
+    }
+
+    // Index of an entity within a slot, or -1 if it did not exist at that tick
+    public int indexOf(int slot, int handle) {
+        int base = slot * stride;
+        for (int i = 0; i < counts[slot]; i++) {
+            if (handles[base + i] == handle) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,258 @@
+package it.unibs.pajc.tools;
+
+import it.unibs.pajc.network.protocol.JoinMessage;
+import it.unibs.pajc.network.protocol.JoinResponseMessage;
+import it.unibs.pajc.network.protocol.Message;
+import it.unibs.pajc.network.protocol.MessageCodec;
+import it.unibs.pajc.network.protocol.MessageType;
+import it.unibs.pajc.network.protocol.PingMessage;
+import it.unibs.pajc.network.protocol.PongMessage;
+import it.unibs.pajc.network.server.GameServer;
+import it.unibs.pajc.network.server.ServerTransportType;
+import javafx.scene.paint.Color;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Compares the server transports under many mostly idle connections. Each transport's server runs in
+// its own JVM so its memory can be read on its own; this process then seats `idle` clients that join
+// and stay silent, and `active` clients that ping the server a few times a second for a while.
+// Rooms are left waiting, so the server does no simulation and the pings measure the transport alone.
+public class ConnectionLoadTest {
+
+    private static final int PLAYERS_PER_ROOM = 50;
+    private static final long PING_INTERVAL_NANOS = 200_000_000L;
+    private static final String STATS_PREFIX = "@stats ";
+
+    private record Client(Socket socket, int playerId, DataInputStream in, DataOutputStream out) {}
+
+    // Resident memory and heap after a GC in KB, and live platform threads
+    private record Stats(long rssKb, long heapKb, int threads) {
+        static Stats parse(String line) {
+            String[] parts = line.split(" ");
+            return new Stats(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+        }
+    }
+
+    private record Result(ServerTransportType type, Stats empty, Stats loaded, double joinSeconds,
+                          long[] rttNanos) {}
+
+    // Usage: ConnectionLoadTest [idle] [active] [seconds] [port] [transport...]
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve(ServerTransportType.valueOf(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+
+        int idle = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int active = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : 5600;
+        List<ServerTransportType> types = new ArrayList<>();
+        for (int i = 4; i < args.length; i++) {
+            types.add(ServerTransportType.valueOf(args[i]));
+        }
+        if (types.isEmpty()) {
+            types.addAll(List.of(ServerTransportType.values()));
+        }
+
+        System.out.printf("%d idle + %d active connections, pinging every %d ms for %d s%n",
+            idle, active, PING_INTERVAL_NANOS / 1_000_000, seconds);
+
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < types.size(); i++) {
+            // A fresh port each run, so sockets still closing from the last one don't get in the way
+            results.add(measure(types.get(i), idle, active, seconds, port + i));
+        }
+
+        System.out.printf("%n%-16s %10s %10s %10s %8s %8s %8s %8s %8s %8s%n", "transport", "RSS MB",
+            "+RSS MB", "heap MB", "threads", "join s", "pings", "p50 ms", "p99 ms", "max ms");
+        for (Result r : results) {
+            long[] rtt = r.rttNanos();
+            System.out.printf("%-16s %10.1f %10.1f %10.1f %8d %8.1f %8d %8.2f %8.2f %8.2f%n", r.type().name(),
+                r.loaded().rssKb() / 1024.0, (r.loaded().rssKb() - r.empty().rssKb()) / 1024.0,
+                r.loaded().heapKb() / 1024.0, r.loaded().threads(), r.joinSeconds(), rtt.length,
+                percentile(rtt, 0.50), percentile(rtt, 0.99), percentile(rtt, 1.0));
+        }
+    }
+
+    private static Result measure(ServerTransportType type, int idle, int active, int seconds, int port)
+            throws Exception {
+        System.out.printf("%s: starting server on port %d%n", type, port);
+        Process server = new ProcessBuilder(ProcessHandle.current().info().command().orElse("java"),
+            "-cp", System.getProperty("java.class.path"), ConnectionLoadTest.class.getName(),
+            "serve", type.name(), Integer.toString(port), Integer.toString(idle + active))
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+
+        // The server logs every join; only the stats lines matter, but the pipe has to keep draining
+        BlockingQueue<String> statsLines = new LinkedBlockingQueue<>();
+        Thread.ofPlatform().daemon().start(() -> {
+            try (BufferedReader lines = new BufferedReader(new InputStreamReader(server.getInputStream()))) {
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    if (line.startsWith(STATS_PREFIX)) {
+                        statsLines.add(line.substring(STATS_PREFIX.length()));
+                    }
+                }
+            } catch (IOException ignored) {
+            }
+        });
+        PrintWriter commands = new PrintWriter(server.getOutputStream(), true);
+
+        List<Client> clients = new ArrayList<>();
+        try {
+            Stats empty = nextStats(statsLines, server);
+
+            long joinStart = System.nanoTime();
+            for (int i = 0; i < idle + active; i++) {
+                clients.add(join(port, "load-" + i));
+            }
+            double joinSeconds = (System.nanoTime() - joinStart) / 1e9;
+            System.out.printf("%s: %d clients joined in %.1f s%n", type, clients.size(), joinSeconds);
+
+            List<Client> pinging = clients.subList(idle, idle + active);
+            List<long[]> samples = new ArrayList<>();
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<long[]>> futures = new ArrayList<>();
+                for (Client client : pinging) {
+                    futures.add(executor.submit(() -> pingUntil(client, deadline)));
+                }
+                // Read the server mid-run, while every connection is open and the pings are flowing
+                Thread.sleep(seconds * 500L);
+                commands.println("stats");
+                Stats loaded = nextStats(statsLines, server);
+                for (var future : futures) {
+                    samples.add(future.get());
+                }
+
+                long[] rtt = samples.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+                return new Result(type, empty, loaded, joinSeconds, rtt);
+            }
+        } finally {
+            for (Client client : clients) {
+                try {
+                    client.socket().close();
+                } catch (IOException ignored) {
+                }
+            }
+            commands.println("quit");
+            if (!server.waitFor(15, TimeUnit.SECONDS)) {
+                server.destroyForcibly();
+            }
+        }
+    }
+
+    private static Stats nextStats(BlockingQueue<String> statsLines, Process server) throws Exception {
+        String line = statsLines.poll(60, TimeUnit.SECONDS);
+        if (line == null) {
+            throw new IOException("Server did not report (alive: " + server.isAlive() + ")");
+        }
+        return Stats.parse(line);
+    }
+
+    private static Client join(int port, String name) throws IOException {
+        Socket socket = new Socket("localhost", port);
+        socket.setTcpNoDelay(true);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+        MessageCodec.writeFrame(out, new JoinMessage(name, Color.GRAY));
+        out.flush();
+        JoinResponseMessage response = (JoinResponseMessage) MessageCodec.readFrame(in);
+        if (!response.isAccepted()) {
+            socket.close();
+            throw new IOException(name + " rejected: " + response.getRejectionReason());
+        }
+        return new Client(socket, response.getAssignedPlayerId(), in, out);
+    }
+
+    private static long[] pingUntil(Client client, long deadline) throws Exception {
+        long[] rtt = new long[(int) ((deadline - System.nanoTime()) / PING_INTERVAL_NANOS) + 1];
+        int count = 0;
+
+        // Spread the clients over the interval instead of pinging in lockstep
+        long next = System.nanoTime() + ThreadLocalRandom.current().nextLong(PING_INTERVAL_NANOS);
+        while (next < deadline && count < rtt.length) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            }
+
+            long sent = System.nanoTime();
+            MessageCodec.writeFrame(client.out(), new PingMessage(client.playerId(), sent, 0, 0));
+            client.out().flush();
+            while (true) {
+                Message message = MessageCodec.readFrame(client.in());
+                if (message.getType() == MessageType.PONG
+                        && ((PongMessage) message).getEchoedClientNanos() == sent) {
+                    break;
+                }
+            }
+            rtt[count++] = System.nanoTime() - sent;
+            next += PING_INTERVAL_NANOS;
+        }
+        return Arrays.copyOf(rtt, count);
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) return Double.NaN;
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    // Runs in the child JVM: a server whose rooms never fill or start, answering "stats" on stdin
+    private static void serve(ServerTransportType type, int port, int expectedClients) throws Exception {
+        GameServer server = new GameServer(type);
+        server.setMaxPlayers(PLAYERS_PER_ROOM);
+        server.getMatchmaker().setMaxRooms(expectedClients / PLAYERS_PER_ROOM + 1);
+        server.start(port);
+
+        System.out.println(STATS_PREFIX + stats());
+        BufferedReader commands = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while ((line = commands.readLine()) != null && !line.equals("quit")) {
+            System.out.println(STATS_PREFIX + stats());
+        }
+        server.stop();
+        System.exit(0);
+    }
+
+    private static String stats() throws IOException {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long heapKb = (runtime.totalMemory() - runtime.freeMemory()) / 1024;
+
+        long rssKb = -1;
+        Path status = Path.of("/proc/self/status");
+        if (Files.exists(status)) {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    rssKb = Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        }
+        return rssKb + " " + heapKb + " " + ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+}
@@ -0,0 +1,108 @@
+package it.unibs.pajc.tools;
+
+import it.unibs.pajc.core.PhysicsConstants;
+import it.unibs.pajc.core.Vector2D;
+import it.unibs.pajc.network.server.ServerGameState;
+import javafx.scene.paint.Color;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Replays one input log through deterministic ServerGameStates and compares the per-tick state hashes:
+// twice in a row on this thread, then many copies at once on a work-stealing pool like the rooms use.
+// Any divergence is reported with the first tick it shows up in.
+public class LockstepCheck {
+
+    public record LoggedInput(long tick, int playerId, Vector2D direction, long sequence) {}
+
+    // Every player changes direction every few ticks, so they chase each other into collisions
+    public static List<LoggedInput> generateLog(long seed, int players, int ticks) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<LoggedInput> log = new ArrayList<>();
+        long[] sequences = new long[players + 1];
+
+        for (long tick = 1; tick <= ticks; tick++) {
+            for (int playerId = 1; playerId <= players; playerId++) {
+                if (random.nextInt(8) != 0) continue;
+                Vector2D direction = new Vector2D(random.nextInt(3) - 1, random.nextInt(3) - 1);
+                log.add(new LoggedInput(tick, playerId, direction, ++sequences[playerId]));
+            }
+        }
+        return log;
+    }
+
+    public static long[] run(List<LoggedInput> log, int players, int ticks) {
+        ServerGameState state = new ServerGameState(PhysicsConstants.TICK_RATE);
+        state.setDeterministic();
+        for (int playerId = 1; playerId <= players; playerId++) {
+            state.addPlayer(playerId, "player-" + playerId, Color.DODGERBLUE);
+        }
+        state.startGame();
+
+        long[] hashes = new long[ticks];
+        int next = 0;
+        for (int tick = 1; tick <= ticks; tick++) {
+            while (next < log.size() && log.get(next).tick() == tick) {
+                LoggedInput input = log.get(next++);
+                state.applyInput(input.playerId(), input.direction(), input.sequence());
+            }
+            state.update(1.0 / PhysicsConstants.TICK_RATE);
+            hashes[tick - 1] = state.getStateHash();
+        }
+        return hashes;
+    }
+
+    // -1 when both runs agree on every tick
+    public static int firstDivergence(long[] expected, long[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            if (i >= actual.length || expected[i] != actual[i]) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    // Usage: LockstepCheck [players] [ticks] [parallelRuns] [seed]
+    public static void main(String[] args) throws Exception {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 3600;
+        int parallelRuns = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        List<LoggedInput> log = generateLog(seed, players, ticks);
+        long[] reference = run(log, players, ticks);
+        boolean ok = report("sequential rerun", reference, run(log, players, ticks));
+
+        // At least a few workers, so the runs interleave and migrate between threads even on small machines
+        ForkJoinPool pool = new ForkJoinPool(Math.max(4, PhysicsConstants.ROOM_WORKER_THREADS),
+            ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        try {
+            List<Future<long[]>> runs = new ArrayList<>();
+            for (int i = 0; i < parallelRuns; i++) {
+                runs.add(pool.submit(() -> run(log, players, ticks)));
+            }
+            for (int i = 0; i < runs.size(); i++) {
+                ok &= report("parallel run " + (i + 1), reference, runs.get(i).get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        System.out.printf("%d players, %d ticks, %d inputs, final hash %016x: %s%n",
+            players, ticks, log.size(), reference[ticks - 1], ok ? "identical" : "DIVERGED");
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean report(String label, long[] expected, long[] actual) {
+        int tick = firstDivergence(expected, actual);
+        if (tick < 0) return true;
+        System.out.printf("%s diverged at tick %d: %016x != %016x%n", label, tick,
+            expected[tick - 1], actual[tick - 1]);
+        return false;
+    }
+}
@@ -3,12 +3,16 @@ package it.unibs.pajc.ui;
 import it.unibs.pajc.ui.scenes.MainMenuScene;
 import it.unibs.pajc.ui.scenes.MultiPlayerGameScene;
 import it.unibs.pajc.ui.scenes.MultiPlayerLobbyScene;
+import it.unibs.pajc.ui.scenes.ReplayScene;
 import it.unibs.pajc.ui.scenes.SinglePlayerScene;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.scene.Scene;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.Stage;
 
+import java.io.File;
+
 public class PhysicsApp extends Application {
 
     private static PhysicsApp instance;
@@ -18,6 +22,7 @@ public class PhysicsApp extends Application {
     private SinglePlayerScene singlePlayerScene;
     private MultiPlayerLobbyScene lobbyScene;
     private MultiPlayerGameScene multiPlayerGameScene;
+    private ReplayScene replayScene;
 
     public static PhysicsApp getInstance() {
         return instance;
@@ -36,6 +41,7 @@ public class PhysicsApp extends Application {
         singlePlayerScene = new SinglePlayerScene(this);
         lobbyScene = new MultiPlayerLobbyScene(this);
         multiPlayerGameScene = new MultiPlayerGameScene(this);
+        replayScene = new ReplayScene(this);
 
         showMainMenu();
 
@@ -50,6 +56,7 @@ public class PhysicsApp extends Application {
     public void showMainMenu() {
         singlePlayerScene.stop();
         multiPlayerGameScene.stop();
+        replayScene.stop();
         primaryStage.setScene(mainMenuScene.getScene());
     }
 
@@ -68,6 +75,22 @@ public class PhysicsApp extends Application {
         multiPlayerGameScene.start();
     }
 
+    // Replays are directories of segments, one per recorded match
+    public void showReplay() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Open Replay");
+        File replays = new File("replays");
+        if (replays.isDirectory()) {
+            chooser.setInitialDirectory(replays.getAbsoluteFile());
+        }
+
+        File directory = chooser.showDialog(primaryStage);
+        if (directory != null && replayScene.open(directory.toPath())) {
+            primaryStage.setScene(replayScene.getScene());
+            replayScene.start();
+        }
+    }
+
     public MultiPlayerLobbyScene getLobbyScene() {
         return lobbyScene;
     }
@@ -79,6 +102,7 @@ public class PhysicsApp extends Application {
     private void cleanup() {
         singlePlayerScene.stop();
         multiPlayerGameScene.stop();
+        replayScene.close();
         lobbyScene.cleanup();
     }
 
@@ -14,12 +14,15 @@ import java.util.Map;
 
 public class HUDOverlay extends VBox {
 
+    public static final int COLLISION_LOG_SIZE = 20;
+
     private final Label positionLabel;
     private final Label velocityLabel;
     private final Label accelerationLabel;
     private final Label timeLabel;
     private final Label kineticEnergyLabel;
     private final Label momentumLabel;
+    private final Label networkLabel;
     private final VBox motionParamsBox;
     private final VBox playersBox;
     private final VBox collisionLogBox;
@@ -42,6 +45,9 @@ public class HUDOverlay extends VBox {
         timeLabel = createLabel("Time: 0.00s", 12, false);
         kineticEnergyLabel = createLabel("KE: 0 J", 12, false);
         momentumLabel = createLabel("Momentum: (0, 0)", 12, false);
+        networkLabel = createLabel("RTT: -", 10, false);
+        networkLabel.setVisible(false);
+        networkLabel.setManaged(false);
 
         motionParamsBox = new VBox(3);
         motionParamsBox.setPadding(new Insets(5, 0, 0, 0));
@@ -65,6 +71,7 @@ public class HUDOverlay extends VBox {
             velocityLabel,
             accelerationLabel,
             timeLabel,
+            networkLabel,
             kineticEnergyLabel,
             momentumLabel,
             motionParamsBox,
@@ -122,6 +129,8 @@ public class HUDOverlay extends VBox {
         collisionScrollPane.setManaged(multiplayer);
         playersBox.setVisible(multiplayer);
         playersBox.setManaged(multiplayer);
+        networkLabel.setVisible(multiplayer);
+        networkLabel.setManaged(multiplayer);
 
         if (multiplayer) {
             positionLabel.setVisible(false);
@@ -195,13 +204,25 @@ public class HUDOverlay extends VBox {
         }
     }
 
+    public void updateNetworkStats(double rttMillis, double jitterMillis, double serverTick,
+                                   double interpolationDelayMillis, long supersededUpdates) {
+        networkLabel.setText(String.format("RTT: %.1f ms (+/- %.1f) | Tick: %.0f%nInterp: %.0f ms | Superseded: %d",
+            rttMillis, jitterMillis, Math.max(serverTick, 0), interpolationDelayMillis, supersededUpdates));
+    }
+
+    // Ticks are counted from the start of the recording
+    public void updateReplayPosition(long tick, long lastTick, int simulationHz, double speed) {
+        networkLabel.setText(String.format("Replay: %.1f s / %.1f s | Tick: %d%nSpeed: %.2fx",
+            tick / (double) simulationHz, lastTick / (double) simulationHz, tick, speed));
+    }
+
     public void addCollisionEvent(CollisionEvent event) {
         if (!multiplayerMode) return;
 
         Label eventLabel = new Label(String.format(
-            "Collision: P%d vs P%d @ %.1f m/s",
-            event.particleIdA().hashCode() % 100,
-            event.particleIdB().hashCode() % 100,
+            "Collision: #%d vs #%d @ %.1f m/s",
+            event.entityA(),
+            event.entityB(),
             event.impactSpeed()
         ));
         eventLabel.setFont(Font.font("Monospace", 9));
@@ -209,7 +230,7 @@ public class HUDOverlay extends VBox {
 
         collisionLogBox.getChildren().add(0, eventLabel);
 
-        if (collisionLogBox.getChildren().size() > 20) {
+        if (collisionLogBox.getChildren().size() > COLLISION_LOG_SIZE) {
             collisionLogBox.getChildren().remove(collisionLogBox.getChildren().size() - 1);
         }
     }
@@ -43,6 +43,9 @@ public class MainMenuScene {
         Button joinGameBtn = createMenuButton("Join Game");
         joinGameBtn.setOnAction(e -> app.showLobby(false));
 
+        Button replayBtn = createMenuButton("Watch Replay");
+        replayBtn.setOnAction(e -> app.showReplay());
+
         Button exitBtn = createMenuButton("Exit");
         exitBtn.setOnAction(e -> {
             app.getPrimaryStage().close();
@@ -50,7 +53,7 @@ public class MainMenuScene {
 
         VBox buttonBox = new VBox(15);
         buttonBox.setAlignment(Pos.CENTER);
-        buttonBox.getChildren().addAll(singlePlayerBtn, hostGameBtn, joinGameBtn, exitBtn);
+        buttonBox.getChildren().addAll(singlePlayerBtn, hostGameBtn, joinGameBtn, replayBtn, exitBtn);
 
         root.getChildren().addAll(title, subtitle, buttonBox);
 
@@ -4,7 +4,11 @@ import it.unibs.pajc.collision.CollisionEvent;
 import it.unibs.pajc.core.Particle;
 import it.unibs.pajc.core.PhysicsConstants;
 import it.unibs.pajc.core.Vector2D;
+import it.unibs.pajc.network.client.ClientPredictor;
 import it.unibs.pajc.network.client.GameClient;
+import it.unibs.pajc.network.client.LatencyEstimator;
+import it.unibs.pajc.network.client.SnapshotInterpolator;
+import it.unibs.pajc.network.protocol.EntityInfo;
 import it.unibs.pajc.network.protocol.GameStartMessage;
 import it.unibs.pajc.network.protocol.StateUpdateMessage;
 import it.unibs.pajc.ui.PhysicsApp;
@@ -22,7 +26,6 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
-import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 
@@ -30,7 +33,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class MultiPlayerGameScene {
 
@@ -40,8 +47,17 @@ public class MultiPlayerGameScene {
     private final HUDOverlay hud;
 
     private GameClient client;
-    private final Map<String, Particle> particles;
+    private ClientPredictor predictor;
+    private final SnapshotInterpolator interpolator;
+
+    // Written by the network thread, consumed once per frame by the game loop
+    private final AtomicReference<StateUpdateMessage> latestUpdate;
+    // Bounded by what the HUD log can show; while the FX thread stalls the oldest events are dropped
+    private final BlockingQueue<CollisionEvent> pendingCollisions;
+    private final AtomicLong supersededUpdates;
+    private final Map<Integer, Particle> particles;
     private final Set<KeyCode> pressedKeys;
+    private long lastKeyEventNanos;
 
     private AnimationTimer gameLoop;
     private AnimationTimer inputLoop;
@@ -54,6 +70,10 @@ public class MultiPlayerGameScene {
         this.app = app;
         this.particles = new ConcurrentHashMap<>();
         this.pressedKeys = new HashSet<>();
+        this.interpolator = new SnapshotInterpolator();
+        this.latestUpdate = new AtomicReference<>();
+        this.pendingCollisions = new ArrayBlockingQueue<>(HUDOverlay.COLLISION_LOG_SIZE);
+        this.supersededUpdates = new AtomicLong();
         this.canvas = new ParticleCanvas(1000, 700);
         this.hud = new HUDOverlay();
         this.hud.setMultiplayerMode(true);
@@ -134,22 +154,55 @@ public class MultiPlayerGameScene {
 
     private void setupKeyHandlers(Scene scene) {
         scene.setOnKeyPressed(e -> {
-            pressedKeys.add(e.getCode());
+            if (pressedKeys.add(e.getCode())) {
+                lastKeyEventNanos = System.nanoTime();
+            }
         });
 
         scene.setOnKeyReleased(e -> {
             pressedKeys.remove(e.getCode());
+            lastKeyEventNanos = System.nanoTime();
         });
     }
 
     private void setupGameLoop() {
         gameLoop = new AnimationTimer() {
+            private long lastFrame = 0;
+
             @Override
             public void handle(long now) {
                 if (running) {
+                    applyLatestUpdate();
+
+                    if (predictor != null && lastFrame > 0) {
+                        predictor.advance((now - lastFrame) / 1_000_000_000.0);
+                    }
+                    lastFrame = now;
+
+                    LatencyEstimator latency = client != null ? client.getLatency() : null;
+                    if (latency != null && latency.hasSamples()) {
+                        interpolator.setRoundTripJitter(latency.getJitterNanos());
+                    }
+                    if (client != null) {
+                        client.setInterpolationDelay((long) (interpolator.getDelayMillis() * 1_000_000));
+                    }
+
+                    // Remote particles are drawn from the interpolation buffer, not the latest snapshot
+                    interpolator.sample(now).forEach((entityId, sample) -> {
+                        Particle p = particles.get(entityId);
+                        if (p != null && !isOwnParticle(p)) {
+                            p.setPosition(sample.position());
+                            p.setVelocity(sample.velocity());
+                        }
+                    });
+
                     canvas.setParticles(List.copyOf(particles.values()));
                     canvas.render();
                     hud.updateMultiPlayer(List.copyOf(particles.values()), null);
+                    if (latency != null) {
+                        hud.updateNetworkStats(latency.getSmoothedRttMillis(), latency.getJitterMillis(),
+                            latency.estimateServerTick(now), interpolator.getDelayMillis(), getSupersededUpdates());
+                    }
                 }
             }
         };
@@ -158,20 +211,25 @@ public class MultiPlayerGameScene {
     private void setupInputLoop() {
         inputLoop = new AnimationTimer() {
             private long lastSend = 0;
-            private static final long INPUT_INTERVAL = 16_666_666L; // ~60 Hz
+            private static final long KEEPALIVE_INTERVAL = PhysicsConstants.INPUT_KEEPALIVE_MS * 1_000_000L;
             private Vector2D lastDirection = Vector2D.ZERO;
 
             @Override
             public void handle(long now) {
                 if (!running || client == null || !client.isConnected()) return;
 
-                if (now - lastSend >= INPUT_INTERVAL) {
-                    Vector2D direction = getInputDirection();
-                    // Send input if direction changed or if actively pressing keys
-                    if (direction.magnitudeSquared() > 0 || !direction.equals(lastDirection)) {
-                        client.sendInput(direction);
-                        lastDirection = direction;
+                // The server holds the last direction, so only changes need sending, plus a slow keepalive
+                Vector2D direction = getInputDirection();
+                boolean changed = !direction.equals(lastDirection);
+                if (changed || now - lastSend >= KEEPALIVE_INTERVAL) {
+                    // A new direction is timed from the key event, a keepalive from this frame
+                    long pressedAt = changed ? lastKeyEventNanos : System.nanoTime();
+                    long sequence = client.sendInput(direction, pressedAt);
+                    // Predict our own movement immediately instead of waiting for the server
+                    if (sequence >= 0 && predictor != null) {
+                        predictor.applyLocalInput(sequence, direction);
                     }
+                    lastDirection = direction;
                     lastSend = now;
                 }
             }
@@ -193,15 +251,39 @@ public class MultiPlayerGameScene {
     public void initializeGame(GameClient client, GameStartMessage startMsg) {
         this.client = client;
         this.particles.clear();
+        this.predictor = null;
+        this.interpolator.setTickRates(startMsg.getSimulationHz(), startMsg.getSnapshotHz());
+        this.interpolator.clear();
+        this.latestUpdate.set(null);
+        this.pendingCollisions.clear();
 
         for (StateUpdateMessage.PlayerState state : startMsg.getInitialStates()) {
-            Particle p = createParticleFromState(state);
-            particles.put(state.particleId, p);
+            if (state.entityId == client.getOwnEntityId()) {
+                predictor = new ClientPredictor(client.getEntityInfo(state.entityId), state,
+                    startMsg.getSimulationHz());
+                particles.put(state.entityId, predictor.getParticle());
+            } else {
+                addParticleFromState(state);
+            }
         }
 
         client.setStateUpdateHandler(this::handleStateUpdate);
         client.setPlayerLeftHandler(msg -> Platform.runLater(() -> {
-            particles.values().removeIf(p -> p.getPlayerId() == msg.getLeftPlayerId());
+            particles.values().removeIf(p -> {
+                if (p.getPlayerId() != msg.getLeftPlayerId()) return false;
+                interpolator.forget(p.getHandle());
+                return true;
+            });
+        }));
+        client.setEntitySpawnHandler(msg -> Platform.runLater(() -> {
+            addParticleFromState(msg.getState());
+        }));
+        client.setEntityDespawnHandler(msg -> Platform.runLater(() -> {
+            Particle p = particles.get(msg.getEntityId());
+            if (p != null && !isOwnParticle(p)) {
+                particles.remove(msg.getEntityId());
+                interpolator.forget(msg.getEntityId());
+            }
         }));
 
         Platform.runLater(() -> {
@@ -212,38 +294,59 @@ public class MultiPlayerGameScene {
         });
     }
 
+    // Runs on the network thread: never blocks on the FX thread, only the newest update is kept
     private void handleStateUpdate(StateUpdateMessage update) {
-        Platform.runLater(() -> {
-            for (StateUpdateMessage.PlayerState state : update.getPlayerStates()) {
-                Particle existing = particles.get(state.particleId);
-                if (existing != null) {
-                    existing.setPosition(state.getPosition());
-                    existing.setVelocity(state.getVelocity());
-                } else {
-                    Particle p = createParticleFromState(state);
-                    particles.put(state.particleId, p);
+        interpolator.addSnapshot(update.getServerTick(), update.getPlayerStates(), System.nanoTime());
+
+        List<CollisionEvent> collisions = update.getRecentCollisions();
+        if (collisions != null) {
+            for (CollisionEvent event : collisions) {
+                while (!pendingCollisions.offer(event)) {
+                    pendingCollisions.poll();
                 }
             }
+        }
+
+        if (latestUpdate.getAndSet(update) != null) {
+            supersededUpdates.incrementAndGet();
+        }
+    }
 
-            List<CollisionEvent> collisions = update.getRecentCollisions();
-            if (collisions != null && !collisions.isEmpty()) {
-                for (CollisionEvent event : collisions) {
-                    hud.addCollisionEvent(event);
+    private void applyLatestUpdate() {
+        StateUpdateMessage update = latestUpdate.getAndSet(null);
+        if (update != null && client != null && predictor != null) {
+            // Only our own particle is driven by the update; remote ones are drawn from the interpolator.
+            // Entities come and go only through the reliable spawn and despawn messages: an update
+            // leaves out whatever was not refreshed this tick, and over UDP it may even be late.
+            for (StateUpdateMessage.PlayerState state : update.getPlayerStates()) {
+                if (state.entityId == client.getOwnEntityId()) {
+                    predictor.reconcile(state);
                 }
             }
-        });
+        }
+
+        CollisionEvent event;
+        while ((event = pendingCollisions.poll()) != null) {
+            hud.addCollisionEvent(event);
+        }
+    }
+
+    private boolean isOwnParticle(Particle particle) {
+        return predictor != null && particle == predictor.getParticle();
     }
 
-    private Particle createParticleFromState(StateUpdateMessage.PlayerState state) {
-        return new Particle(
-            state.particleId,
-            state.playerId,
-            PhysicsConstants.DEFAULT_PARTICLE_MASS,
-            state.radius,
-            Color.color(state.red, state.green, state.blue),
-            state.getPosition(),
-            state.getVelocity()
-        );
+    public long getSupersededUpdates() {
+        return supersededUpdates.get();
+    }
+
+    // Static attributes come from the client's entity cache; states for unannounced entities are skipped
+    private void addParticleFromState(StateUpdateMessage.PlayerState state) {
+        if (particles.containsKey(state.entityId)) return;
+
+        EntityInfo info = client.getEntityInfo(state.entityId);
+        if (info != null) {
+            particles.put(state.entityId, info.createParticle(state));
+        }
     }
 
     public void start() {
@@ -267,6 +370,7 @@ public class MultiPlayerGameScene {
             client = null;
         }
         particles.clear();
+        predictor = null;
         app.getLobbyScene().cleanup();
         app.showMainMenu();
     }
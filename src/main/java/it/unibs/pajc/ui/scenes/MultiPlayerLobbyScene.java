@@ -3,6 +3,7 @@ package it.unibs.pajc.ui.scenes;
 import it.unibs.pajc.core.PhysicsConstants;
 import it.unibs.pajc.network.client.GameClient;
 import it.unibs.pajc.network.server.GameServer;
+import it.unibs.pajc.network.server.ServerTransportType;
 import it.unibs.pajc.ui.PhysicsApp;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
@@ -29,6 +30,8 @@ public class MultiPlayerLobbyScene {
     private TextField portField;
     private TextField nameField;
     private ColorPicker colorPicker;
+    private ComboBox<ServerTransportType> transportBox;
+    private HBox transportRow;
     private TextArea logArea;
     private Button actionButton;
     private Button startGameButton;
@@ -58,12 +61,18 @@ public class MultiPlayerLobbyScene {
         nameField = createTextField("Player");
         colorPicker = new ColorPicker(Color.DODGERBLUE);
         colorPicker.setPrefWidth(300);
+        transportBox = new ComboBox<>();
+        transportBox.getItems().addAll(ServerTransportType.values());
+        transportBox.setValue(GameServer.DEFAULT_TRANSPORT);
+        transportBox.setPrefWidth(300);
+        transportRow = createLabeledField("Transport:", transportBox);
 
         formBox.getChildren().addAll(
             createLabeledField("Host Address:", hostField),
             createLabeledField("Port:", portField),
             createLabeledField("Player Name:", nameField),
-            createLabeledField("Color:", colorPicker)
+            createLabeledField("Color:", colorPicker),
+            transportRow
         );
 
         logArea = new TextArea();
@@ -129,6 +138,9 @@ public class MultiPlayerLobbyScene {
 
     public void setup(boolean isHost) {
         this.isHost = isHost;
+        // Only the host picks how its server handles connections
+        transportRow.setVisible(isHost);
+        transportRow.setManaged(isHost);
 
         if (isHost) {
             titleLabel.setText("Host Game");
@@ -165,7 +177,7 @@ public class MultiPlayerLobbyScene {
         try {
             int port = Integer.parseInt(portField.getText().trim());
 
-            server = new GameServer();
+            server = new GameServer(transportBox.getValue());
             server.setStatusCallback(msg -> Platform.runLater(() -> log(msg)));
             server.start(port);
 
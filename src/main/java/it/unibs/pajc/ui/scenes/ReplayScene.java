@@ -0,0 +1,286 @@
+package it.unibs.pajc.ui.scenes;
+
+import it.unibs.pajc.core.Particle;
+import it.unibs.pajc.network.protocol.EntityInfo;
+import it.unibs.pajc.network.protocol.StateUpdateMessage;
+import it.unibs.pajc.network.replay.ReplayReader;
+import it.unibs.pajc.ui.PhysicsApp;
+import it.unibs.pajc.ui.components.HUDOverlay;
+import it.unibs.pajc.ui.components.ParticleCanvas;
+import javafx.animation.AnimationTimer;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.StackPane;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Plays back a recorded match. Everything runs on the FX thread: the reader re-simulates the
+// recorded inputs, and scrubbing the timeline seeks from the nearest keyframe.
+public final class ReplayScene {
+
+    private static final double[] SPEEDS = {0.25, 0.5, 1, 2, 4, 8};
+    private static final int DEFAULT_SPEED = 2;
+
+    private final PhysicsApp app;
+    private final Scene scene;
+    private final ParticleCanvas canvas;
+    private final HUDOverlay hud;
+    private final Map<Integer, Particle> particles;
+
+    private ReplayReader reader;
+    private AnimationTimer playbackLoop;
+    private boolean playing;
+    private int speedIndex = DEFAULT_SPEED;
+    private double pendingTicks;
+
+    private Slider timeline;
+    private boolean updatingTimeline;
+    private Button playButton;
+    private Label statusLabel;
+
+    public ReplayScene(PhysicsApp app) {
+        this.app = app;
+        this.particles = new HashMap<>();
+        this.canvas = new ParticleCanvas(1000, 700);
+        this.hud = new HUDOverlay();
+        this.hud.setMultiplayerMode(true);
+        this.scene = createScene();
+        setupPlaybackLoop();
+    }
+
+    private Scene createScene() {
+        BorderPane root = new BorderPane();
+        root.setStyle("-fx-background-color: #0f0f1a;");
+
+        StackPane canvasArea = new StackPane();
+        canvasArea.setStyle("-fx-background-color: #1a1a2e;");
+
+        canvas.widthProperty().bind(canvasArea.widthProperty());
+        canvas.heightProperty().bind(canvasArea.heightProperty());
+
+        StackPane.setAlignment(hud, Pos.TOP_LEFT);
+        StackPane.setMargin(hud, new Insets(10));
+
+        canvasArea.getChildren().addAll(canvas, hud);
+        root.setCenter(canvasArea);
+        root.setBottom(createBottomBar());
+
+        Scene scene = new Scene(root, 1200, 800);
+        setupKeyHandlers(scene);
+
+        return scene;
+    }
+
+    private HBox createBottomBar() {
+        HBox bar = new HBox(15);
+        bar.setPadding(new Insets(10, 20, 10, 20));
+        bar.setAlignment(Pos.CENTER_LEFT);
+        bar.setStyle("-fx-background-color: #16213e;");
+
+        Button backBtn = new Button("Back");
+        backBtn.setStyle("-fx-background-color: #e74c3c; -fx-text-fill: white; " +
+                         "-fx-font-weight: bold; -fx-background-radius: 5;");
+        backBtn.setOnAction(e -> {
+            close();
+            app.showMainMenu();
+        });
+
+        playButton = new Button("Play");
+        playButton.setPrefWidth(70);
+        playButton.setOnAction(e -> togglePlaying());
+
+        Button slowerBtn = new Button("<<");
+        slowerBtn.setOnAction(e -> changeSpeed(-1));
+
+        Button fasterBtn = new Button(">>");
+        fasterBtn.setOnAction(e -> changeSpeed(1));
+
+        timeline = new Slider(0, 1, 0);
+        HBox.setHgrow(timeline, Priority.ALWAYS);
+        timeline.valueProperty().addListener((obs, oldVal, newVal) -> {
+            if (!updatingTimeline) {
+                seek(newVal.longValue());
+            }
+        });
+
+        statusLabel = new Label("Space: play/pause | Left/Right: -/+ 5 s");
+        statusLabel.setStyle("-fx-text-fill: #888888;");
+
+        bar.getChildren().addAll(backBtn, playButton, slowerBtn, fasterBtn, timeline, statusLabel);
+        return bar;
+    }
+
+    private void setupKeyHandlers(Scene scene) {
+        scene.setOnKeyPressed(e -> {
+            if (reader == null) return;
+            switch (e.getCode()) {
+                case SPACE -> togglePlaying();
+                case LEFT -> seek(reader.getTick() - 5L * reader.getSimulationHz());
+                case RIGHT -> seek(reader.getTick() + 5L * reader.getSimulationHz());
+                default -> {
+                }
+            }
+        });
+    }
+
+    private void setupPlaybackLoop() {
+        playbackLoop = new AnimationTimer() {
+            private long lastFrame = 0;
+
+            @Override
+            public void handle(long now) {
+                if (reader != null && playing && lastFrame > 0) {
+                    // Frame time is turned into whole ticks; the remainder carries over
+                    pendingTicks += (now - lastFrame) / 1_000_000_000.0 * reader.getSimulationHz() * SPEEDS[speedIndex];
+                    try {
+                        while (pendingTicks >= 1) {
+                            pendingTicks--;
+                            if (!reader.step()) {
+                                setPlaying(false);
+                                break;
+                            }
+                        }
+                    } catch (IOException ex) {
+                        showError(ex);
+                    }
+                    refresh();
+                }
+                lastFrame = now;
+            }
+        };
+    }
+
+    public boolean open(Path matchDirectory) {
+        close();
+        try {
+            reader = ReplayReader.open(matchDirectory);
+        } catch (IOException e) {
+            showError(e);
+            return false;
+        }
+
+        updatingTimeline = true;
+        timeline.setMin(reader.getFirstTick());
+        timeline.setMax(reader.getLastTick());
+        timeline.setValue(reader.getFirstTick());
+        updatingTimeline = false;
+
+        speedIndex = DEFAULT_SPEED;
+        statusLabel.setText(String.format("%s: %d keyframes in %d segment(s)",
+            matchDirectory.getFileName(), reader.getKeyframeCount(), reader.getSegmentCount()));
+        refresh();
+        return true;
+    }
+
+    private void seek(long tick) {
+        if (reader == null) return;
+        try {
+            reader.seek(tick);
+        } catch (IOException e) {
+            showError(e);
+        }
+        pendingTicks = 0;
+        refresh();
+    }
+
+    private void togglePlaying() {
+        if (reader == null) return;
+        // Playing from the end starts over
+        if (!playing && reader.getTick() >= reader.getLastTick()) {
+            seek(reader.getFirstTick());
+        }
+        setPlaying(!playing);
+    }
+
+    private void setPlaying(boolean playing) {
+        this.playing = playing;
+        this.pendingTicks = 0;
+        playButton.setText(playing ? "Pause" : "Play");
+    }
+
+    private void changeSpeed(int delta) {
+        speedIndex = Math.max(0, Math.min(SPEEDS.length - 1, speedIndex + delta));
+        refresh();
+    }
+
+    // Mirrors the reader's state into the canvas particles
+    private void refresh() {
+        if (reader == null) return;
+
+        List<StateUpdateMessage.PlayerState> states = reader.getStates();
+        Set<Integer> present = new HashSet<>();
+        for (StateUpdateMessage.PlayerState state : states) {
+            present.add(state.entityId);
+            Particle p = particles.get(state.entityId);
+            if (p != null) {
+                p.setPosition(state.getPosition());
+                p.setVelocity(state.getVelocity());
+            } else {
+                EntityInfo info = reader.getEntityInfo(state.entityId);
+                if (info != null) {
+                    particles.put(state.entityId, info.createParticle(state));
+                }
+            }
+        }
+        particles.keySet().retainAll(present);
+
+        List<Particle> visible = List.copyOf(particles.values());
+        canvas.setParticles(visible);
+        canvas.render();
+        hud.updateMultiPlayer(visible, null);
+        hud.updateReplayPosition(reader.getTick() - reader.getFirstTick(),
+            reader.getLastTick() - reader.getFirstTick(), reader.getSimulationHz(), SPEEDS[speedIndex]);
+
+        updatingTimeline = true;
+        timeline.setValue(reader.getTick());
+        updatingTimeline = false;
+    }
+
+    private void showError(IOException e) {
+        setPlaying(false);
+        statusLabel.setText("Replay error: " + e.getMessage());
+        statusLabel.setStyle("-fx-text-fill: #e74c3c;");
+    }
+
+    public void start() {
+        playbackLoop.start();
+    }
+
+    public void stop() {
+        if (playing) {
+            setPlaying(false);
+        }
+        playbackLoop.stop();
+    }
+
+    public void close() {
+        stop();
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException ignored) {
+            }
+            reader = null;
+        }
+        particles.clear();
+        hud.clearCollisions();
+        statusLabel.setStyle("-fx-text-fill: #888888;");
+    }
+
+    public Scene getScene() {
+        return scene;
+    }
+}